@@ -0,0 +1,64 @@
+#!/usr/bin/env bash
+# Measures how long CarMarket takes until it serves traffic, and its resident memory at that point,
+# with and without lazy initialization and the AppCDS archive.
+#
+#   mvn -Pcds package && scripts/startup-benchmark.sh [runs] [-- extra application arguments]
+#
+# Without extra arguments it boots against an in-memory H2 database, so no PostgreSQL is needed;
+# pass e.g. -- --spring.datasource.url=jdbc:postgresql://localhost/carmarket to measure a real one.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=5
+if [[ $# -gt 0 && $1 != "--" ]]; then RUNS=$1; shift; fi
+[[ ${1:-} == "--" ]] && shift
+APP_ARGS=("$@")
+if [[ ${#APP_ARGS[@]} -eq 0 ]]; then
+  APP_ARGS=(--spring.datasource.url=jdbc:h2:mem:benchmark)
+fi
+
+# The archive only maps for the exact jar path it was dumped with, which the cds profile does from target.
+cd target
+JAR=carMarket-0.0.1-SNAPSHOT.jar
+ARCHIVE=app.jsa
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+[[ -f $JAR && -d lib ]] || { echo "Build with: mvn -Pcds package" >&2; exit 1; }
+
+LAZY=(--spring.main.lazy-initialization=true --spring.data.jpa.repositories.bootstrap-mode=deferred)
+
+# Starts the application, waits for the "Started" line and prints milliseconds since launch and VmRSS in MB.
+measure() {
+  local jvm_opts=$1; shift
+  local log; log=$(mktemp)
+  local start; start=$(date +%s%N)
+  # shellcheck disable=SC2086
+  "$JAVA" $jvm_opts -jar "$JAR" --server.port=0 "${APP_ARGS[@]}" "$@" >"$log" 2>&1 &
+  local pid=$!
+  until grep -q "Started CarMarketApplication" "$log"; do
+    if ! kill -0 "$pid" 2>/dev/null; then cat "$log" >&2; rm -f "$log"; return 1; fi
+    sleep 0.01
+  done
+  local elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+  local rss; rss=$(awk '/VmRSS/ { printf "%.0f", $2 / 1024 }' "/proc/$pid/status")
+  kill "$pid"; wait "$pid" 2>/dev/null || true
+  rm -f "$log"
+  echo "$elapsed $rss"
+}
+
+run() {
+  local name=$1 jvm_opts=$2; shift 2
+  local total_ms=0 total_rss=0 ms rss
+  for _ in $(seq "$RUNS"); do
+    read -r ms rss < <(measure "$jvm_opts" "$@")
+    total_ms=$((total_ms + ms)); total_rss=$((total_rss + rss))
+  done
+  printf "%-12s %10d %10d\n" "$name" $((total_ms / RUNS)) $((total_rss / RUNS))
+}
+
+printf "%-12s %10s %10s\n" mode startup_ms rss_mb
+run baseline "-Xshare:auto"
+run lazy "-Xshare:auto" "${LAZY[@]}"
+if [[ -f $ARCHIVE ]]; then
+  run cds "-Xshare:on -XX:SharedArchiveFile=$ARCHIVE"
+  run cds+lazy "-Xshare:on -XX:SharedArchiveFile=$ARCHIVE" "${LAZY[@]}"
+fi
@@ -0,0 +1,162 @@
+package com.restapi.carMarket;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Closed-loop load test of GET /cars/{id} and GET /cars?size=50 at high concurrency.
+ * Without {@code --target} it boots the application twice against H2, once on the Tomcat
+ * thread pool and once with {@code carmarket.threads.virtual=true} (Java 21+ only), and
+ * reports throughput and latency percentiles for both. With {@code --target=http://host:port}
+ * it only loads an already running instance, e.g. one backed by PostgreSQL.
+ *
+ * mvn -Pbenchmark test-compile exec:exec@load-test -Dloadtest.args="--concurrency=400 --duration=30"
+ */
+public class CarLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        // devtools would otherwise relaunch this main method with the application arguments
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        Map<String, String> options = new HashMap<>();
+        for(String arg : args)
+            if(arg.startsWith("--") && arg.contains("="))
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "200"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "20"));
+        int rows = Integer.parseInt(options.getOrDefault("rows", "10000"));
+        List<Result> results = new ArrayList<>();
+
+        if(options.containsKey("target")) {
+            results.add(run(options.get("target"), options.getOrDefault("mode", "external"), concurrency, duration, rows));
+        } else {
+            results.add(runEmbedded(false, concurrency, duration, rows));
+            if(Runtime.version().feature() >= 21)
+                results.add(runEmbedded(true, concurrency, duration, rows));
+            else
+                System.out.println("Skipping virtual threads: running on Java " + Runtime.version().feature());
+        }
+
+        System.out.printf("%-10s %12s %10s %12s %10s %10s %10s%n",
+                "mode", "concurrency", "requests", "throughput", "p50 ms", "p99 ms", "errors");
+        for(Result result : results)
+            System.out.printf("%-10s %12d %10d %12.1f %10.2f %10.2f %10d%n", result.mode, result.concurrency,
+                    result.requests, result.throughput, result.p50, result.p99, result.errors);
+        write(Paths.get(options.getOrDefault("out", "target/loadtest-result.json")), results);
+    }
+
+    private static Result runEmbedded(boolean virtual, int concurrency, int duration, int rows) throws Exception {
+        ConfigurableApplicationContext context = SpringApplication.run(CarMarketApplication.class,
+                "--spring.main.banner-mode=off", "--logging.level.root=WARN", "--server.port=0",
+                "--carmarket.threads.virtual=" + virtual);
+        try {
+            CarMarketBenchmarkContext.seed(context, rows);
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            return run("http://localhost:" + port, virtual ? "virtual" : "platform", concurrency, duration, rows);
+        } finally {
+            context.close();
+        }
+    }
+
+    private static Result run(String target, String mode, int concurrency, int duration, int rows) throws Exception {
+        ExecutorService httpExecutor = Executors.newFixedThreadPool(16);
+        HttpClient httpClient = HttpClient.newBuilder().executor(httpExecutor)
+                .connectTimeout(Duration.ofSeconds(5)).build();
+        List<Long> ids = new ArrayList<>();
+        for(long id = 1; id <= rows; id++)
+            ids.add(id);
+
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(duration);
+        List<Future<long[]>> futures = new ArrayList<>();
+        long[] errors = new long[concurrency];
+
+        for(int c = 0; c < concurrency; c++) {
+            int client = c;
+            futures.add(clients.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                Random random = new Random(client);
+                while(System.nanoTime() < deadline) {
+                    String path = count % 2 == 0 ? "/cars/" + ids.get(random.nextInt(ids.size())) : "/cars?size=50";
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(target + path)).GET().build();
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        if(response.statusCode() >= 500)
+                            errors[client]++;
+                    } catch (IOException e) {
+                        errors[client]++;
+                    }
+                    if(count == latencies.length)
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    latencies[count++] = System.nanoTime() - start;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+
+        long[] all = new long[0];
+        for(Future<long[]> future : futures) {
+            long[] latencies = future.get();
+            int length = all.length;
+            all = Arrays.copyOf(all, length + latencies.length);
+            System.arraycopy(latencies, 0, all, length, latencies.length);
+        }
+        clients.shutdown();
+        httpExecutor.shutdown();
+        Arrays.sort(all);
+
+        Result result = new Result();
+        result.mode = mode;
+        result.concurrency = concurrency;
+        result.requests = all.length;
+        result.throughput = (double) all.length / duration;
+        result.p50 = percentile(all, 0.5);
+        result.p99 = percentile(all, 0.99);
+        result.errors = Arrays.stream(errors).sum();
+        return result;
+    }
+
+    private static double percentile(long[] sorted, double q) {
+        return sorted.length == 0 ? 0 : sorted[(int) (q * (sorted.length - 1))] / 1_000_000.0;
+    }
+
+    private static void write(Path path, List<Result> results) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(path))) {
+            out.println("[");
+            for(int i = 0; i < results.size(); i++) {
+                Result r = results.get(i);
+                out.printf(Locale.ROOT, "  {\"mode\":\"%s\",\"concurrency\":%d,\"requests\":%d,\"throughput\":%.1f," +
+                                "\"p50Ms\":%.3f,\"p99Ms\":%.3f,\"errors\":%d}%s%n", r.mode, r.concurrency, r.requests,
+                        r.throughput, r.p50, r.p99, r.errors, i < results.size() - 1 ? "," : "");
+            }
+            out.println("]");
+        }
+    }
+
+    private static class Result {
+        String mode;
+        int concurrency;
+        long requests;
+        double throughput;
+        double p50;
+        double p99;
+        long errors;
+    }
+}
@@ -0,0 +1,53 @@
+package com.restapi.carMarket;
+
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.service.CarCatalog;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Boots the application against the in-memory H2 database from the test resources
+ * and seeds it with a deterministic catalogue.
+ */
+public final class CarMarketBenchmarkContext {
+
+    private static final String[][] MODELS = {
+            {"BMW", "3 Series"}, {"BMW", "5 Series"}, {"Porsche", "Panamera"}, {"Porsche", "911"},
+            {"Audi", "A4"}, {"Audi", "A6"}, {"Toyota", "Corolla"}, {"Honda", "Civic"}};
+
+    private CarMarketBenchmarkContext(){}
+
+    public static ConfigurableApplicationContext start() {
+        return start(true);
+    }
+
+    /**
+     * @param metrics whether Micrometer meters and Hibernate statistics are recorded,
+     *                so instrumentation overhead can be compared against an uninstrumented run
+     */
+    public static ConfigurableApplicationContext start(boolean metrics) {
+        return SpringApplication.run(CarMarketApplication.class,
+                "--spring.main.banner-mode=off", "--logging.level.root=WARN", "--server.port=0",
+                "--management.metrics.enable.all=" + metrics,
+                "--spring.jpa.properties.hibernate.generate_statistics=" + metrics);
+    }
+
+    public static List<Car> seed(ConfigurableApplicationContext context, int rows) {
+        CarDao carDao = context.getBean(CarDao.class);
+        List<Car> cars = new ArrayList<>(rows);
+        for(int i = 0; i < rows; i++)
+            cars.add(car(i));
+        List<Car> saved = carDao.saveAll(cars);
+        context.getBean(CarCatalog.class).load();
+        return saved;
+    }
+
+    public static Car car(int i) {
+        String[] model = MODELS[i % MODELS.length];
+        return new Car(model[0], model[1], 2000 + i % 20, 5000 + (i * 7919) % 95000);
+    }
+}
@@ -0,0 +1,103 @@
+package com.restapi.carMarket.api;
+
+import com.restapi.carMarket.CarMarketBenchmarkContext;
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.model.Car;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+
+/**
+ * Drives every {@link CarController} endpoint through the full MockMvc request path:
+ * dispatch, argument binding, validation, service, DAO and JSON conversion.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarControllerBenchmark {
+
+    static final String CAR = "{\"brand\":\"Porsche\",\"model\":\"Panamera\",\"year\":2017,\"price\":70000}";
+
+    @Param({"1000"})
+    int rows;
+
+    @Param({"true", "false"})
+    boolean metrics;
+
+    ConfigurableApplicationContext context;
+    MockMvc mockMvc;
+    Long id;
+
+    @Setup
+    public void setUp() {
+        context = CarMarketBenchmarkContext.start(metrics);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+        List<Car> cars = CarMarketBenchmarkContext.seed(context, rows);
+        id = cars.get(rows / 2).getId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class DeleteTarget {
+        Long id;
+
+        @Setup(Level.Invocation)
+        public void insert(CarControllerBenchmark benchmark) {
+            id = benchmark.context.getBean(CarDao.class).save(CarMarketBenchmarkContext.car(0)).getId();
+        }
+    }
+
+    @Benchmark
+    public MvcResult findAll() throws Exception {
+        return mockMvc.perform(get("/cars").accept(APPLICATION_JSON)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult findById() throws Exception {
+        return mockMvc.perform(get("/cars/" + id).accept(APPLICATION_JSON)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult search() throws Exception {
+        return mockMvc.perform(get("/cars/search?brand=BMW&model=3 Series&minYear=2005&maxPrice=60000&sort=price")
+                .accept(APPLICATION_JSON)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult insert() throws Exception {
+        return mockMvc.perform(post("/cars").contentType(APPLICATION_JSON).content(CAR)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult insertBatch() throws Exception {
+        return mockMvc.perform(post("/cars/batch").contentType(APPLICATION_JSON)
+                .content("[" + CAR + "," + CAR + "," + CAR + "," + CAR + "]")).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult update() throws Exception {
+        return mockMvc.perform(put("/cars/" + id).header(IF_MATCH, "*").contentType(APPLICATION_JSON).content(CAR)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult deleteById(DeleteTarget target) throws Exception {
+        return mockMvc.perform(delete("/cars/" + target.id)).andReturn();
+    }
+}
@@ -0,0 +1,75 @@
+package com.restapi.carMarket.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.restapi.carMarket.CarMarketBenchmarkContext;
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.model.Car;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads one listing page and serializes it, once as managed {@link Car} entities written through bean
+ * introspection and once as {@code CarView} projections written by {@link CarViewSerializer}.
+ * Run with {@code -prof gc} and compare {@code gc.alloc.rate.norm}, the bytes allocated per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarListingBenchmark {
+
+    @Param({"50", "500"})
+    int size;
+
+    ConfigurableApplicationContext context;
+    CarDao carDao;
+    EntityManager entityManager;
+    TransactionTemplate readOnly;
+    ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        context = CarMarketBenchmarkContext.start(false);
+        CarMarketBenchmarkContext.seed(context, 1000);
+        carDao = context.getBean(CarDao.class);
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(context.getBean(EntityManagerFactory.class));
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+        objectMapper = context.getBean(ObjectMapper.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] entities() {
+        return readOnly.execute(status -> write(entityManager
+                .createQuery("select c from Car c where c.id > :id order by c.id", Car.class)
+                .setParameter("id", 0L).setMaxResults(size).getResultList()));
+    }
+
+    @Benchmark
+    public byte[] views() {
+        return readOnly.execute(status -> write(carDao.findViewsByIdGreaterThan(0L, PageRequest.of(0, size))));
+    }
+
+    private byte[] write(Object page) {
+        try {
+            return objectMapper.writeValueAsBytes(page);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.restapi.carMarket.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.restapi.carMarket.CarMarketBenchmarkContext;
+import com.restapi.carMarket.model.Car;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarSerializationBenchmark {
+
+    ObjectWriter carWriter;
+    ObjectWriter listWriter;
+    ObjectReader carReader;
+    Car car;
+    List<Car> cars;
+    byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        carWriter = objectMapper.writerFor(Car.class);
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Car.class));
+        carReader = objectMapper.readerFor(Car.class);
+
+        car = CarMarketBenchmarkContext.car(0);
+        car.setId(1L);
+        cars = new ArrayList<>(100);
+        for(int i = 0; i < 100; i++)
+            cars.add(CarMarketBenchmarkContext.car(i));
+        json = carWriter.writeValueAsBytes(car);
+    }
+
+    @Benchmark
+    public byte[] serializeCar() throws IOException {
+        return carWriter.writeValueAsBytes(car);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(100)
+    public byte[] serializeHundredCars() throws IOException {
+        return listWriter.writeValueAsBytes(cars);
+    }
+
+    @Benchmark
+    public Car deserializeCar() throws IOException {
+        return carReader.readValue(json);
+    }
+}
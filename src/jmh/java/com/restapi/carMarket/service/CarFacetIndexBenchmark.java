@@ -0,0 +1,58 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.CarMarketBenchmarkContext;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarFacets;
+import com.restapi.carMarket.model.CarSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Facet counts of the browse page over the benchmark cars, without a selection, after picking a brand
+ * and after narrowing that down to a year bucket and two price bands.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarFacetIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    int cars;
+
+    CarFacetIndex carFacetIndex;
+    String brand;
+
+    @Setup
+    public void setUp() {
+        carFacetIndex = new CarFacetIndex();
+        carFacetIndex.yearBucket = 5;
+        carFacetIndex.priceBands = new int[] {5000, 10000, 15000, 20000, 30000, 50000, 75000, 100000};
+        for(int i = 0; i < cars; i++) {
+            Car car = CarMarketBenchmarkContext.car(i);
+            carFacetIndex.onChange(null, new CarSnapshot(i, car.getBrand(), car.getModel(), car.getYear(),
+                    car.getPrice(), null));
+        }
+        carFacetIndex.onLoaded();
+        brand = CarMarketBenchmarkContext.car(0).getBrand();
+    }
+
+    @Benchmark
+    public CarFacets unfiltered() {
+        return carFacetIndex.facets(null, null, null, null);
+    }
+
+    @Benchmark
+    public CarFacets brand() {
+        return carFacetIndex.facets(List.of(brand), null, null, null);
+    }
+
+    @Benchmark
+    public CarFacets brandYearAndPrice() {
+        return carFacetIndex.facets(List.of(brand), null, List.of("2015-2019"), List.of("10000-14999", "15000-19999"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.CarMarketBenchmarkContext;
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarBatchResult;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares inserting {@code cars} listings one {@link CarService#insert} call at a time
+ * with a single {@link CarService#insertAll} batch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarInsertBenchmark {
+
+    @Param({"100", "1000"})
+    int cars;
+
+    ConfigurableApplicationContext context;
+    CarService carService;
+    CarDao carDao;
+
+    @Setup
+    public void setUp() {
+        context = CarMarketBenchmarkContext.start();
+        carService = context.getBean(CarService.class);
+        carDao = context.getBean(CarDao.class);
+    }
+
+    @TearDown(Level.Iteration)
+    public void clear() {
+        carDao.deleteAllInBatch();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void singleInserts() {
+        for(int i = 0; i < cars; i++)
+            carService.insert(CarMarketBenchmarkContext.car(i));
+    }
+
+    @Benchmark
+    public List<CarBatchResult> batchInsert() {
+        List<Car> batch = new ArrayList<>(cars);
+        for(int i = 0; i < cars; i++)
+            batch.add(CarMarketBenchmarkContext.car(i));
+        return carService.insertAll(batch);
+    }
+}
@@ -0,0 +1,89 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.CarMarketBenchmarkContext;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarPage;
+import com.restapi.carMarket.model.CarSearch;
+import com.restapi.carMarket.model.CarStats;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarServiceBenchmark {
+
+    @Param({"1000", "10000"})
+    int rows;
+
+    @Param({"true", "false"})
+    boolean metrics;
+
+    ConfigurableApplicationContext context;
+    CarService carService;
+    CarStatsIndex carStatsIndex;
+    List<Double> percentiles = Arrays.asList(0.25, 0.5, 0.75, 0.9);
+    Long id;
+    CarSearch search;
+
+    @Setup
+    public void setUp() {
+        context = CarMarketBenchmarkContext.start(metrics);
+        carService = context.getBean(CarService.class);
+        carStatsIndex = context.getBean(CarStatsIndex.class);
+        List<Car> cars = CarMarketBenchmarkContext.seed(context, rows);
+        id = cars.get(rows / 2).getId();
+        search = new CarSearch("BMW", "3 Series");
+        search.setMinYear(2005);
+        search.setMaxPrice(60000);
+        search.setSort("price");
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Car> findAll() {
+        return carService.findAll();
+    }
+
+    @Benchmark
+    public void streamAll(Blackhole blackhole) {
+        carService.streamAll(blackhole::consume);
+    }
+
+    @Benchmark
+    public CarPage findFirstPage() {
+        return carService.findPage(null, null);
+    }
+
+    @Benchmark
+    public CarPage search() {
+        return carService.search(search, null, null);
+    }
+
+    @Benchmark
+    public Car findById() {
+        return carService.findById(id);
+    }
+
+    @Benchmark
+    public List<CarStats> statsPerModelYear() {
+        return carStatsIndex.stats("BMW", "3 Series", null, percentiles);
+    }
+
+    @Benchmark
+    public CarStats statsSummaryPerBrand() {
+        return carStatsIndex.summary("BMW", null, null, percentiles);
+    }
+}
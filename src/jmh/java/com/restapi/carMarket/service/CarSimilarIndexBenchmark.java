@@ -0,0 +1,58 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.CarMarketBenchmarkContext;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarSnapshot;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ten cars most similar to a listing of the benchmark catalogue, as its detail page shows them,
+ * with and without recency weighting. The benchmark cars spread over eight models only, so every
+ * model holds an eighth of the catalogue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarSimilarIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    int cars;
+
+    CarSimilarIndex carSimilarIndex;
+    CarSnapshot[] listings;
+    int next;
+
+    @Setup
+    public void setUp() {
+        carSimilarIndex = new CarSimilarIndex();
+        carSimilarIndex.priceStep = 2000;
+        carSimilarIndex.ageStepDays = 30;
+        LocalDateTime now = LocalDateTime.now();
+        listings = new CarSnapshot[1024];
+        for(int i = 0; i < cars; i++) {
+            Car car = CarMarketBenchmarkContext.car(i);
+            CarSnapshot snapshot = new CarSnapshot(i, car.getBrand(), car.getModel(), car.getYear(), car.getPrice(),
+                    now.minusMinutes(cars - i));
+            carSimilarIndex.onChange(null, snapshot);
+            if(i % (cars / listings.length) == 0 && i / (cars / listings.length) < listings.length)
+                listings[i / (cars / listings.length)] = snapshot;
+        }
+    }
+
+    @Benchmark
+    public List<CarSnapshot> similar() {
+        return carSimilarIndex.similar(listings[next++ & (listings.length - 1)], 10, false);
+    }
+
+    @Benchmark
+    public List<CarSnapshot> similarRecent() {
+        return carSimilarIndex.similar(listings[next++ & (listings.length - 1)], 10, true);
+    }
+}
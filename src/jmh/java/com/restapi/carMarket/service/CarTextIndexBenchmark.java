@@ -0,0 +1,55 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.CarMarketBenchmarkContext;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarSnapshot;
+import com.restapi.carMarket.model.CarSuggestion;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Autocomplete and full-text lookups on a {@link CarTextIndex} filled directly with catalog snapshots,
+ * so listing counts in the millions can be measured without seeding a database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CarTextIndexBenchmark {
+
+    private static final String[] TRIMS = {"", "Touring", "Sport", "Hybrid", "GTS", "Limited", "Turbo", "Coupe"};
+
+    @Param({"100000", "1000000"})
+    int rows;
+
+    CarTextIndex carTextIndex;
+
+    @Setup
+    public void setUp() {
+        carTextIndex = new CarTextIndex();
+        for(int i = 0; i < rows; i++) {
+            Car car = CarMarketBenchmarkContext.car(i);
+            String model = (car.getModel() + " " + TRIMS[i / 8 % TRIMS.length]).trim();
+            carTextIndex.onChange(null, new CarSnapshot(i, car.getBrand(), model, car.getYear(), car.getPrice(), null));
+        }
+    }
+
+    @Benchmark
+    public List<CarSuggestion> suggestPrefix() {
+        return carTextIndex.suggest("pors", 10);
+    }
+
+    @Benchmark
+    public List<CarSuggestion> suggestMisspelled() {
+        return carTextIndex.suggest("porshe panamra", 10);
+    }
+
+    @Benchmark
+    public List<Long> searchPage() {
+        return carTextIndex.search("porshe panamra", 50);
+    }
+}
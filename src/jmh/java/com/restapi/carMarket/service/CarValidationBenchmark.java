@@ -0,0 +1,36 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.Car;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CarValidationBenchmark {
+
+    CarService carService;
+    Car validCar;
+    Car invalidCar;
+
+    @Setup
+    public void setUp() {
+        carService = new CarService();
+        validCar = new Car("BMW", "5 Series", 2017, 40000);
+        invalidCar = new Car("BMW", "5 Series", 1700, 40000);
+    }
+
+    @Benchmark
+    public boolean isValidAcceptingCar() {
+        return carService.isValid(validCar);
+    }
+
+    @Benchmark
+    public boolean isValidRejectingCar() {
+        return carService.isValid(invalidCar);
+    }
+}
@@ -0,0 +1,75 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.CarMarketBenchmarkContext;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarSnapshot;
+import com.restapi.carMarket.model.SavedSearch;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching one listing against the saved searches, as every insert and update does after commit.
+ * The searches copy the brands and models of the benchmark cars, a fifth of them leave the model open,
+ * and most restrict year and price the way buyers do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SavedSearchIndexBenchmark {
+
+    @Param({"100000", "1000000"})
+    int searches;
+
+    SavedSearchIndex savedSearchIndex;
+    List<SavedSearch> all;
+    CarSnapshot[] cars;
+    int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        all = new ArrayList<>(searches);
+        for(int i = 0; i < searches; i++) {
+            Car car = CarMarketBenchmarkContext.car(i);
+            int price = 5000 + random.nextInt(95000);
+            SavedSearch search = new SavedSearch(car.getBrand(), i % 5 == 0 ? null : car.getModel(),
+                    random.nextInt(3) == 0 ? null : 2000 + random.nextInt(20), null,
+                    random.nextInt(4) == 0 ? null : price / 2, price);
+            search.setId((long) i);
+            all.add(search);
+        }
+        savedSearchIndex = new SavedSearchIndex();
+        savedSearchIndex.addAll(all);
+
+        cars = new CarSnapshot[1024];
+        for(int i = 0; i < cars.length; i++) {
+            Car car = CarMarketBenchmarkContext.car(random.nextInt(1_000_000));
+            cars[i] = new CarSnapshot(i, car.getBrand(), car.getModel(), car.getYear(), car.getPrice(), null);
+        }
+    }
+
+    @Benchmark
+    public List<Long> match() {
+        return savedSearchIndex.match(cars[next++ & (cars.length - 1)]);
+    }
+
+    /**
+     * What matching costs without the index: every search checked against the car.
+     */
+    @Benchmark
+    public int scan() {
+        CarSnapshot car = cars[next++ & (cars.length - 1)];
+        int hits = 0;
+        for(SavedSearch search : all)
+            if(search.matches(car))
+                hits++;
+        return hits;
+    }
+}
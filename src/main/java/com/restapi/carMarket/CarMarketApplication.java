@@ -2,8 +2,14 @@ package com.restapi.carMarket;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.core.Ordered;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+// Runs the cache advice outside the transaction advice, so evictions happen after commit.
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+@EnableScheduling
 public class CarMarketApplication {
 
 	public static void main(String[] args) { SpringApplication.run(CarMarketApplication.class, args);
@@ -0,0 +1,100 @@
+package com.restapi.carMarket.api;
+
+import com.restapi.carMarket.model.CarExportRow;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Reads the format written by {@link CarColumnarWriter}, one batch at a time.
+ */
+public final class CarColumnarReader {
+
+    private CarColumnarReader(){}
+
+    public static void read(InputStream input, Consumer<CarExportRow> consumer) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        byte[] magic = new byte[CarColumnarWriter.MAGIC.length];
+        in.readFully(magic);
+        if(!Arrays.equals(magic, CarColumnarWriter.MAGIC) || in.readUnsignedByte() != CarColumnarWriter.VERSION)
+            throw new IOException("Not a car export in version " + CarColumnarWriter.VERSION);
+
+        List<String> brands = new ArrayList<>();
+        List<String> models = new ArrayList<>();
+        long lastId = 0;
+        long[] lastTimes = new long[2];
+        int rows;
+        while((rows = (int) readVarint(in)) > 0) {
+            long[] ids = new long[rows];
+            for(int i = 0; i < rows; i++) {
+                long zigzag = readVarint(in);
+                lastId += (zigzag >>> 1) ^ -(zigzag & 1);
+                ids[i] = lastId;
+            }
+            String[] brandColumn = readDictionaryColumn(in, rows, brands);
+            String[] modelColumn = readDictionaryColumn(in, rows, models);
+            int[] years = new int[rows];
+            for(int i = 0; i < rows; i++)
+                years[i] = (int) readVarint(in);
+            int[] prices = new int[rows];
+            for(int i = 0; i < rows; i++)
+                prices[i] = (int) readVarint(in);
+            LocalDateTime[] postTimes = readTimeColumn(in, rows, lastTimes, 0);
+            LocalDateTime[] modifiedTimes = readTimeColumn(in, rows, lastTimes, 1);
+
+            for(int i = 0; i < rows; i++)
+                consumer.accept(new CarExportRow(ids[i], brandColumn[i], modelColumn[i], years[i], prices[i],
+                        postTimes[i], modifiedTimes[i]));
+        }
+    }
+
+    private static String[] readDictionaryColumn(DataInputStream in, int rows, List<String> dictionary) throws IOException {
+        String[] column = new String[rows];
+        for(int i = 0; i < rows; i++) {
+            int code = (int) readVarint(in);
+            if(code == dictionary.size()) {
+                byte[] bytes = new byte[(int) readVarint(in)];
+                in.readFully(bytes);
+                dictionary.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            column[i] = dictionary.get(code);
+        }
+        return column;
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if(b < 0)
+                throw new EOFException();
+            value |= (long) (b & 0x7F) << shift;
+            if((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static LocalDateTime[] readTimeColumn(DataInputStream in, int rows, long[] lastTimes, int column) throws IOException {
+        LocalDateTime[] times = new LocalDateTime[rows];
+        for(int i = 0; i < rows; i++) {
+            long value = readVarint(in);
+            if(value == 0)
+                continue;
+            long zigzag = value - 1;
+            lastTimes[column] += (zigzag >>> 1) ^ -(zigzag & 1);
+            times[i] = LocalDateTime.ofEpochSecond(lastTimes[column], 0, ZoneOffset.UTC);
+        }
+        return times;
+    }
+}
@@ -0,0 +1,147 @@
+package com.restapi.carMarket.api;
+
+import com.restapi.carMarket.model.CarExportRow;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary export. Rows are collected in batches of {@link #BATCH_SIZE} and every batch is written
+ * column by column, so like values sit together and compress well:
+ * <pre>
+ * file         := "CARX" version:u8 batch* 0:varint
+ * batch        := rows:varint id{rows} brand{rows} model{rows} year{rows} price{rows} postTime{rows} modifiedTime{rows}
+ * id           := zigzag varint of the difference to the previous id in the file
+ * brand, model := varint code in a dictionary per column; the code equal to the dictionary size
+ *                 introduces a new entry, followed by its UTF-8 length as varint and its bytes
+ * year, price  := varint
+ * time         := varint, 0 for null, otherwise 1 + zigzag of the difference between the epoch second of the
+ *                 local date-time read as UTC and the previous non-null value of the column
+ * </pre>
+ * {@link CarColumnarReader} reads it back.
+ */
+public class CarColumnarWriter implements CarExportWriter {
+
+    public static final byte[] MAGIC = {'C', 'A', 'R', 'X'};
+    public static final int VERSION = 1;
+    public static final int BATCH_SIZE = 4096;
+
+    private static final long NULL_TIME = Long.MIN_VALUE;
+
+    private final OutputStream out;
+    private final long[] ids = new long[BATCH_SIZE];
+    private final int[] brands = new int[BATCH_SIZE];
+    private final int[] models = new int[BATCH_SIZE];
+    private final int[] years = new int[BATCH_SIZE];
+    private final int[] prices = new int[BATCH_SIZE];
+    private final long[] postTimes = new long[BATCH_SIZE];
+    private final long[] modifiedTimes = new long[BATCH_SIZE];
+    private final Dictionary brandDictionary = new Dictionary();
+    private final Dictionary modelDictionary = new Dictionary();
+    private int rows;
+    private long lastId;
+    private long lastPostTime;
+    private long lastModifiedTime;
+
+    public CarColumnarWriter(OutputStream out) throws IOException {
+        this.out = new BufferedOutputStream(out, 64 * 1024);
+        this.out.write(MAGIC);
+        this.out.write(VERSION);
+    }
+
+    @Override
+    public void write(CarExportRow row) throws IOException {
+        ids[rows] = row.getId();
+        brands[rows] = brandDictionary.code(row.getBrand());
+        models[rows] = modelDictionary.code(row.getModel());
+        years[rows] = row.getYear();
+        prices[rows] = row.getPrice();
+        postTimes[rows] = time(row.getPostTime());
+        modifiedTimes[rows] = time(row.getModifiedTime());
+        if(++rows == BATCH_SIZE)
+            writeBatch();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if(rows > 0)
+            writeBatch();
+        writeVarint(0);
+        out.flush();
+    }
+
+    private void writeBatch() throws IOException {
+        writeVarint(rows);
+        for(int i = 0; i < rows; i++) {
+            long delta = ids[i] - lastId;
+            writeVarint((delta << 1) ^ (delta >> 63));
+            lastId = ids[i];
+        }
+        brandDictionary.writeColumn(brands);
+        modelDictionary.writeColumn(models);
+        for(int i = 0; i < rows; i++)
+            writeVarint(years[i] & 0xFFFFFFFFL);
+        for(int i = 0; i < rows; i++)
+            writeVarint(prices[i] & 0xFFFFFFFFL);
+        lastPostTime = writeTimeColumn(postTimes, lastPostTime);
+        lastModifiedTime = writeTimeColumn(modifiedTimes, lastModifiedTime);
+        rows = 0;
+    }
+
+    private long writeTimeColumn(long[] times, long last) throws IOException {
+        for(int i = 0; i < rows; i++) {
+            if(times[i] == NULL_TIME) {
+                writeVarint(0);
+                continue;
+            }
+            long delta = times[i] - last;
+            writeVarint(1 + ((delta << 1) ^ (delta >> 63)));
+            last = times[i];
+        }
+        return last;
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long time(LocalDateTime time) {
+        return time == null ? NULL_TIME : time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private final class Dictionary {
+        final Map<String, Integer> codes = new HashMap<>();
+        final List<String> entries = new ArrayList<>();
+        int written;
+
+        int code(String value) {
+            return codes.computeIfAbsent(value == null ? "" : value, key -> {
+                entries.add(key);
+                return entries.size() - 1;
+            });
+        }
+
+        void writeColumn(int[] codes) throws IOException {
+            for(int i = 0; i < rows; i++) {
+                writeVarint(codes[i]);
+                if(codes[i] == written) {
+                    byte[] bytes = entries.get(written++).getBytes(StandardCharsets.UTF_8);
+                    writeVarint(bytes.length);
+                    out.write(bytes);
+                }
+            }
+        }
+    }
+}
@@ -1,45 +1,352 @@
 package com.restapi.carMarket.api;
 
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.restapi.carMarket.exceptions.CarPreconditionFailedException;
+import com.restapi.carMarket.exceptions.CarVersionConflictException;
+import com.restapi.carMarket.exceptions.CarVersionRequiredException;
+import com.restapi.carMarket.exceptions.IngestTicketNotFoundException;
+import com.restapi.carMarket.model.ArchivedCar;
 import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarAlert;
+import com.restapi.carMarket.model.CarBatchResult;
+import com.restapi.carMarket.model.CarChange;
+import com.restapi.carMarket.model.CarFacets;
+import com.restapi.carMarket.model.CarIngestTicket;
+import com.restapi.carMarket.model.CarPage;
+import com.restapi.carMarket.model.CarPatch;
+import com.restapi.carMarket.model.CarSearch;
+import com.restapi.carMarket.model.CarSnapshot;
+import com.restapi.carMarket.model.CarStats;
+import com.restapi.carMarket.model.CarSuggestion;
+import com.restapi.carMarket.model.CarView;
+import com.restapi.carMarket.model.SavedSearch;
+import com.restapi.carMarket.service.CarChangeFeed;
+import com.restapi.carMarket.service.CarFacetIndex;
+import com.restapi.carMarket.service.CarIngestQueue;
 import com.restapi.carMarket.service.CarService;
+import com.restapi.carMarket.service.CarStatsIndex;
+import com.restapi.carMarket.service.CarTextIndex;
+import com.restapi.carMarket.service.SavedSearchAlerts;
+import com.restapi.carMarket.service.SavedSearchService;
 import com.sun.istack.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.List;
 
 @RequestMapping("/cars")
 @RestController
 public class CarController {
 
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     @Autowired
     CarService carService;
 
-    @GetMapping
-    public List<Car> findAll() {
-        return carService.findAll();
+    @Autowired
+    CarStatsIndex carStatsIndex;
+
+    @Autowired
+    CarTextIndex carTextIndex;
+
+    @Autowired
+    CarFacetIndex carFacetIndex;
+
+    @Autowired
+    CarChangeFeed carChangeFeed;
+
+    @Autowired(required = false)
+    CarIngestQueue carIngestQueue;
+
+    @Autowired
+    SavedSearchService savedSearchService;
+
+    @Autowired
+    SavedSearchAlerts savedSearchAlerts;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @GetMapping(produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<CarPage> findAll(@RequestParam(value = "cursor", required = false) String cursor,
+                                           @RequestParam(value = "size", required = false) Integer size,
+                                           @RequestHeader HttpHeaders headers) {
+        // The catalog may only confirm the client's copy; a page that is sent gets the tag of the rows in it,
+        // which can come from a replica that has not caught up with the catalog yet.
+        String pageTag = carService.findPageTag(cursor, size);
+        if(pageTag != null && isNotModified(headers, "\"" + pageTag + "\"", null))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag("\"" + pageTag + "\"").build();
+
+        CarPage page = carService.findPage(cursor, size);
+        String etag = "\"" + carService.pageTag(page) + "\"";
+        if(isNotModified(headers, etag, null))
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        return ResponseEntity.ok().eTag(etag).body(page);
+    }
+
+    /**
+     * The cars with the given ids in one query, in request order; ids that do not exist are left out.
+     */
+    @GetMapping(params = "ids", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<Car> findAllById(@RequestParam("ids") List<Long> ids) {
+        return carService.findAllById(ids);
+    }
+
+    @GetMapping(produces = APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody streamAll() {
+        ObjectWriter writer = objectMapper.writerFor(Car.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        return out -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+            generator.setRootValueSeparator(null);
+            try {
+                carService.streamAll(car -> {
+                    try {
+                        writer.writeValue(generator, car);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.flush();
+        };
+    }
+
+    /**
+     * Streams all cars, or with {@code since} only those modified at or after that time, as csv, csv.gz
+     * or the compact columnar format of {@link CarColumnarWriter}.
+     */
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "format", defaultValue = "csv.gz") String format,
+                                                        @RequestParam(value = "since", required = false)
+                                                        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
+        CarExportFormat exportFormat = CarExportFormat.of(format);
+        StreamingResponseBody body = out -> {
+            CarExportWriter writer = exportFormat.open(out);
+            try {
+                carService.export(since, row -> {
+                    try {
+                        writer.write(row);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.finish();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + exportFormat.getFileName() + "\"")
+                .body(body);
+    }
+
+    /**
+     * Long poll for the changes after seq {@code after}: answers at once when there are some,
+     * otherwise as soon as the next ones are published or with an empty list after {@code wait} ms.
+     */
+    @GetMapping(value = "changes", produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<List<CarChange>> changes(@RequestParam(value = "after", defaultValue = "0") long after,
+                                                   @RequestParam(value = "limit", defaultValue = "500") int limit,
+                                                   @RequestParam(value = "wait", defaultValue = "25000") long wait) {
+        return carChangeFeed.poll(after, limit, wait);
+    }
+
+    @GetMapping(value = "changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(value = "after", required = false) Long after,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return carChangeFeed.subscribe(lastEventId != null ? lastEventId : after != null ? after : 0);
+    }
+
+    @PostMapping("saved-searches")
+    @ResponseStatus(HttpStatus.CREATED)
+    public SavedSearch saveSearch(@NotNull @RequestBody SavedSearch search) {
+        return savedSearchService.save(search);
+    }
+
+    @GetMapping("saved-searches/{id}")
+    public SavedSearch findSavedSearch(@NotNull @PathVariable("id") Long id) {
+        return savedSearchService.findById(id);
+    }
+
+    @DeleteMapping("saved-searches/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void deleteSavedSearch(@NotNull @PathVariable("id") Long id) {
+        savedSearchService.deleteById(id);
+    }
+
+    /**
+     * Long poll for the alerts of a saved search after seq {@code after}, answered like {@link #changes}.
+     */
+    @GetMapping(value = "saved-searches/{id}/alerts", produces = MediaType.APPLICATION_JSON_VALUE)
+    public DeferredResult<List<CarAlert>> alerts(@NotNull @PathVariable("id") Long id,
+                                                 @RequestParam(value = "after", defaultValue = "0") long after,
+                                                 @RequestParam(value = "wait", defaultValue = "25000") long wait) {
+        savedSearchService.findById(id);
+        return savedSearchAlerts.poll(id, after, wait);
     }
 
+    @GetMapping(value = "saved-searches/{id}/alerts", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAlerts(@NotNull @PathVariable("id") Long id,
+                                   @RequestParam(value = "after", required = false) Long after,
+                                   @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        savedSearchService.findById(id);
+        return savedSearchAlerts.subscribe(id, lastEventId != null ? lastEventId : after != null ? after : 0);
+    }
+
+    @GetMapping("search")
+    public CarPage search(CarSearch search,
+                          @RequestParam(value = "cursor", required = false) String cursor,
+                          @RequestParam(value = "size", required = false) Integer size) {
+        return carService.search(search, cursor, size);
+    }
+
+    @GetMapping("suggest")
+    public List<CarSuggestion> suggest(@RequestParam("q") String query,
+                                       @RequestParam(value = "limit", defaultValue = "10") int limit) {
+        return carTextIndex.suggest(query, limit);
+    }
+
+    @GetMapping("fulltext")
+    public List<CarView> fulltext(@RequestParam("q") String query,
+                              @RequestParam(value = "size", required = false) Integer size) {
+        return carService.fulltext(query, size);
+    }
+
+    @GetMapping("stats")
+    public List<CarStats> stats(@RequestParam(value = "brand", required = false) String brand,
+                                @RequestParam(value = "model", required = false) String model,
+                                @RequestParam(value = "year", required = false) Integer year,
+                                @RequestParam(value = "percentiles", defaultValue = "0.25,0.5,0.75,0.9") List<Double> percentiles) {
+        return carStatsIndex.stats(brand, model, year, percentiles);
+    }
+
+    @GetMapping("stats/summary")
+    public CarStats statsSummary(@RequestParam(value = "brand", required = false) String brand,
+                                 @RequestParam(value = "model", required = false) String model,
+                                 @RequestParam(value = "year", required = false) Integer year,
+                                 @RequestParam(value = "percentiles", defaultValue = "0.25,0.5,0.75,0.9") List<Double> percentiles) {
+        return carStatsIndex.summary(brand, model, year, percentiles);
+    }
+
+    @GetMapping("facets")
+    public CarFacets facets(@RequestParam(value = "brand", required = false) List<String> brand,
+                            @RequestParam(value = "model", required = false) List<String> model,
+                            @RequestParam(value = "year", required = false) List<String> year,
+                            @RequestParam(value = "price", required = false) List<String> price) {
+        return carFacetIndex.facets(brand, model, year, price);
+    }
+
+    @GetMapping(value = "archive", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CarPage findArchive(@RequestParam(value = "cursor", required = false) String cursor,
+                               @RequestParam(value = "size", required = false) Integer size) {
+        return carService.findArchivePage(cursor, size);
+    }
+
+    @GetMapping("archive/{id}")
+    public ArchivedCar findArchivedById(@PathVariable("id") Long id) {
+        return carService.findArchivedById(id);
+    }
+
+    @GetMapping("{id}/similar")
+    public List<CarView> similar(@PathVariable("id") Long id,
+                                 @RequestParam(value = "k", defaultValue = "10") int k,
+                                 @RequestParam(value = "recent", defaultValue = "false") boolean recent) {
+        return carService.similar(id, k, recent);
+    }
+
+    /**
+     * Answers a matching If-None-Match or If-Modified-Since from the catalog with 304, without loading the car.
+     * Otherwise the validators sent along are taken from the car that is actually returned.
+     */
     @GetMapping("{id}")
-    public Car findById(@NotNull @PathVariable("id") Long id) {
-        return carService.findById(id);
+    public ResponseEntity<Car> findById(@NotNull @PathVariable("id") Long id, @RequestHeader HttpHeaders headers) {
+        CarSnapshot snapshot = carService.findSnapshot(id);
+        if(snapshot != null) {
+            String etag = etag(id, snapshot.getVersion());
+            if(isNotModified(headers, etag, snapshot.getModifiedTime())) {
+                ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag);
+                if(snapshot.getModifiedTime() != null)
+                    response.lastModified(snapshot.getModifiedTime().atZone(ZoneId.systemDefault()));
+                return response.build();
+            }
+        }
+
+        Car car = carService.findById(id);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(car.getVersion() != null)
+            response.eTag(etag(id, car.getVersion()));
+        if(car.getModifiedTime() != null)
+            response.lastModified(car.getModifiedTime().atZone(ZoneId.systemDefault()));
+        return response.body(car);
     }
 
+    /**
+     * Creates the car, or with the write-behind {@link CarIngestQueue} enabled queues it and answers 202
+     * with a ticket to follow under {@code /cars/ingest/{ticket}}, or 503 while the queue is full.
+     */
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    public void insert(@NotNull @Valid @RequestBody Car car) {
-        carService.insert(car);
+    public ResponseEntity<CarIngestTicket> insert(@NotNull @Valid @RequestBody Car car) {
+        if(carIngestQueue == null) {
+            carService.insert(car);
+            return ResponseEntity.status(HttpStatus.CREATED).build();
+        }
+
+        CarIngestTicket ticket = carIngestQueue.offer(car);
+        if(ticket == null)
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        return ResponseEntity.accepted().location(URI.create("/cars/ingest/" + ticket.getTicket())).body(ticket);
+    }
+
+    @GetMapping("ingest/{ticket}")
+    public CarIngestTicket ingestStatus(@PathVariable("ticket") String ticket) {
+        CarIngestTicket status = carIngestQueue == null ? null : carIngestQueue.status(ticket);
+        if(status == null)
+            throw new IngestTicketNotFoundException();
+        return status;
+    }
+
+    @PostMapping("batch")
+    public List<CarBatchResult> insertAll(@NotNull @RequestBody List<Car> cars) {
+        return carService.insertAll(cars);
     }
 
     @DeleteMapping
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteById(@NotNull @Valid @RequestBody Car car){
+    public void delete(@NotNull @Valid @RequestBody Car car){
         carService.delete(car);
     }
 
+    @DeleteMapping(params = "ids")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void deleteAllById(@RequestParam("ids") List<Long> ids){
+        carService.deleteAllById(ids);
+    }
+
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteById(@NotNull @PathVariable("id") Long id){
@@ -48,8 +355,64 @@ public class CarController {
 
     @PutMapping("{id}")
     @ResponseStatus(HttpStatus.OK)
-    public void update(@NotNull @PathVariable Long id, @NotNull @Valid @RequestBody Car car){
+    public void update(@NotNull @PathVariable Long id, @NotNull @Valid @RequestBody Car car, @RequestHeader HttpHeaders headers){
+        car.setVersion(expectedVersion(id, headers, car.getVersion()));
         carService.update(id,car);
     }
 
+    @PatchMapping("{id}")
+    @ResponseStatus(HttpStatus.OK)
+    public void patch(@NotNull @PathVariable Long id, @NotNull @RequestBody CarPatch patch, @RequestHeader HttpHeaders headers){
+        patch.setVersion(expectedVersion(id, headers, patch.getVersion()));
+        carService.patch(id,patch);
+    }
+
+    /**
+     * The version a write expects the car to be at: the one the If-Match ETag names, else the one in the body.
+     * With neither the write is refused, so clients cannot overwrite each other's edits unknowingly;
+     * {@code If-Match: *} opts into writing whatever the current version is.
+     */
+    private static Long expectedVersion(long id, HttpHeaders headers, Long bodyVersion) {
+        List<String> ifMatch = headers.getIfMatch();
+        if(ifMatch.isEmpty()) {
+            if(bodyVersion == null)
+                throw new CarVersionRequiredException();
+            return bodyVersion;
+        }
+        if(ifMatch.contains("*"))
+            return bodyVersion;
+        String prefix = "\"" + id + ".";
+        for(String candidate : ifMatch) {
+            if(!candidate.startsWith(prefix) || !candidate.endsWith("\""))
+                continue;
+            long version;
+            try {
+                version = Long.parseLong(candidate.substring(prefix.length(), candidate.length() - 1));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if(bodyVersion != null && bodyVersion != version)
+                throw new CarVersionConflictException();
+            return version;
+        }
+        throw new CarPreconditionFailedException();
+    }
+
+    private static String etag(long id, long version) {
+        return "\"" + id + "." + version + "\"";
+    }
+
+    private static boolean isNotModified(HttpHeaders headers, String etag, LocalDateTime modifiedTime) {
+        List<String> ifNoneMatch = headers.getIfNoneMatch();
+        if(!ifNoneMatch.isEmpty()) {
+            for(String candidate : ifNoneMatch)
+                if(candidate.equals("*") || candidate.equals(etag) || candidate.equals("W/" + etag))
+                    return true;
+            return false;
+        }
+        long ifModifiedSince = headers.getIfModifiedSince();
+        return ifModifiedSince >= 0 && modifiedTime != null
+                && modifiedTime.atZone(ZoneId.systemDefault()).toEpochSecond() <= ifModifiedSince / 1000;
+    }
+
 }
@@ -0,0 +1,76 @@
+package com.restapi.carMarket.api;
+
+import com.restapi.carMarket.model.CarExportRow;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * RFC 4180 CSV with a header line, optionally gzip compressed.
+ */
+public class CarCsvWriter implements CarExportWriter {
+
+    public static final String HEADER = "id,brand,model,year,price,postTime,modifiedTime";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final GZIPOutputStream gzip;
+    private final Writer writer;
+
+    public CarCsvWriter(OutputStream out, boolean compress) throws IOException {
+        gzip = compress ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        writer = new BufferedWriter(new OutputStreamWriter(compress ? gzip : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write(HEADER);
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void write(CarExportRow row) throws IOException {
+        writer.write(Long.toString(row.getId()));
+        writer.write(',');
+        writeText(row.getBrand());
+        writer.write(',');
+        writeText(row.getModel());
+        writer.write(',');
+        writer.write(Integer.toString(row.getYear()));
+        writer.write(',');
+        writer.write(Integer.toString(row.getPrice()));
+        writer.write(',');
+        writeTime(row.getPostTime());
+        writer.write(',');
+        writeTime(row.getModifiedTime());
+        writer.write("\r\n");
+    }
+
+    @Override
+    public void finish() throws IOException {
+        writer.flush();
+        if(gzip != null)
+            gzip.finish();
+    }
+
+    private void writeText(String text) throws IOException {
+        if(text == null)
+            return;
+        if(text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\r') < 0 && text.indexOf('\n') < 0) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private void writeTime(LocalDateTime time) throws IOException {
+        if(time != null)
+            TIME_FORMAT.formatTo(time, writer);
+    }
+}
@@ -0,0 +1,41 @@
+package com.restapi.carMarket.api;
+
+import com.restapi.carMarket.exceptions.CarSearchNotValidException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public enum CarExportFormat {
+    CSV("csv", "text/csv", "cars.csv"),
+    CSV_GZIP("csv.gz", "application/gzip", "cars.csv.gz"),
+    COLUMNAR("columnar", "application/octet-stream", "cars.carx");
+
+    private final String name;
+    private final String mediaType;
+    private final String fileName;
+
+    CarExportFormat(String name, String mediaType, String fileName) {
+        this.name = name;
+        this.mediaType = mediaType;
+        this.fileName = fileName;
+    }
+
+    public static CarExportFormat of(String name) {
+        for(CarExportFormat format : values())
+            if(format.name.equals(name))
+                return format;
+        throw new CarSearchNotValidException();
+    }
+
+    public CarExportWriter open(OutputStream out) throws IOException {
+        return this == COLUMNAR ? new CarColumnarWriter(out) : new CarCsvWriter(out, this == CSV_GZIP);
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+}
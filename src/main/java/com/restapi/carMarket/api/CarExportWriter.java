@@ -0,0 +1,19 @@
+package com.restapi.carMarket.api;
+
+import com.restapi.carMarket.model.CarExportRow;
+
+import java.io.IOException;
+
+/**
+ * Writes export rows in one wire format. Implementations buffer a bounded amount of data,
+ * independent of the number of rows.
+ */
+public interface CarExportWriter {
+
+    void write(CarExportRow row) throws IOException;
+
+    /**
+     * Writes whatever is still buffered and the format's trailer, leaving the underlying stream open.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,101 @@
+package com.restapi.carMarket.api;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.restapi.carMarket.model.CarView;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+/**
+ * Writes a {@link CarView} field by field with pre-encoded field names, instead of going through
+ * bean introspection, and formats its timestamps straight into a small char buffer rather than
+ * through a {@code DateTimeFormatter}. The output is identical to what {@code Car} serializes to.
+ */
+@JsonComponent
+public class CarViewSerializer extends StdSerializer<CarView> {
+
+    private static final SerializableString ID = new SerializedString("id");
+    private static final SerializableString BRAND = new SerializedString("brand");
+    private static final SerializableString MODEL = new SerializedString("model");
+    private static final SerializableString YEAR = new SerializedString("year");
+    private static final SerializableString PRICE = new SerializedString("price");
+    private static final SerializableString POST_TIME = new SerializedString("postTime");
+    private static final SerializableString MODIFIED_TIME = new SerializedString("modifiedTime");
+    private static final SerializableString VERSION = new SerializedString("version");
+
+    private static final int TIME_LENGTH = "yyyy-MM-dd HH:mm:ss".length();
+
+    public CarViewSerializer() {
+        super(CarView.class);
+    }
+
+    @Override
+    public void serialize(CarView car, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        char[] buffer = new char[TIME_LENGTH];
+        gen.writeStartObject(car);
+        gen.writeFieldName(ID);
+        writeNumber(gen, car.getId());
+        gen.writeFieldName(BRAND);
+        gen.writeString(car.getBrand());
+        gen.writeFieldName(MODEL);
+        gen.writeString(car.getModel());
+        gen.writeFieldName(YEAR);
+        gen.writeNumber(car.getYear());
+        gen.writeFieldName(PRICE);
+        gen.writeNumber(car.getPrice());
+        gen.writeFieldName(POST_TIME);
+        writeTime(gen, car.getPostTime(), buffer);
+        gen.writeFieldName(MODIFIED_TIME);
+        writeTime(gen, car.getModifiedTime(), buffer);
+        gen.writeFieldName(VERSION);
+        writeNumber(gen, car.getVersion());
+        gen.writeEndObject();
+    }
+
+    private static void writeNumber(JsonGenerator gen, Long value) throws IOException {
+        if(value == null)
+            gen.writeNull();
+        else
+            gen.writeNumber(value);
+    }
+
+    /**
+     * Writes the time as "yyyy-MM-dd HH:mm:ss", the {@code @JsonFormat} pattern of {@code Car}.
+     */
+    private static void writeTime(JsonGenerator gen, LocalDateTime time, char[] buffer) throws IOException {
+        if(time == null) {
+            gen.writeNull();
+            return;
+        }
+        int year = time.getYear();
+        if(year < 0 || year > 9999) {
+            gen.writeString(String.format("%04d-%02d-%02d %02d:%02d:%02d", year, time.getMonthValue(),
+                    time.getDayOfMonth(), time.getHour(), time.getMinute(), time.getSecond()));
+            return;
+        }
+        digits(buffer, 0, year, 4);
+        buffer[4] = '-';
+        digits(buffer, 5, time.getMonthValue(), 2);
+        buffer[7] = '-';
+        digits(buffer, 8, time.getDayOfMonth(), 2);
+        buffer[10] = ' ';
+        digits(buffer, 11, time.getHour(), 2);
+        buffer[13] = ':';
+        digits(buffer, 14, time.getMinute(), 2);
+        buffer[16] = ':';
+        digits(buffer, 17, time.getSecond(), 2);
+        gen.writeString(buffer, 0, TIME_LENGTH);
+    }
+
+    private static void digits(char[] buffer, int offset, int value, int length) {
+        for(int i = offset + length - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
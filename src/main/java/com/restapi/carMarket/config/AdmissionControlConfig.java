@@ -0,0 +1,31 @@
+package com.restapi.carMarket.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts the per-client rate limit and then the load shedder in front of every {@code /cars} endpoint,
+ * so a throttled client never takes up one of the concurrency slots.
+ */
+@Configuration
+public class AdmissionControlConfig implements WebMvcConfigurer {
+
+    @Autowired
+    Environment environment;
+
+    @Autowired
+    ObjectProvider<MeterRegistry> registry;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry interceptors) {
+        MeterRegistry meterRegistry = registry.getIfAvailable(SimpleMeterRegistry::new);
+        interceptors.addInterceptor(new RateLimitInterceptor(environment, meterRegistry)).addPathPatterns("/cars/**");
+        interceptors.addInterceptor(new LoadSheddingInterceptor(environment, meterRegistry)).addPathPatterns("/cars/**");
+    }
+}
@@ -0,0 +1,35 @@
+package com.restapi.carMarket.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+
+/**
+ * Per-endpoint settings under a common prefix, e.g. {@code carmarket.rate-limit.findAll.burst},
+ * with {@code <prefix>default.<name>} as fallback for endpoints that are not configured.
+ */
+final class AdmissionSettings {
+
+    static final String REJECTED_METRIC_NAME = "cars.rejected";
+
+    private final Environment environment;
+    private final String prefix;
+
+    AdmissionSettings(Environment environment, String prefix) {
+        this.environment = environment;
+        this.prefix = prefix;
+    }
+
+    <T> T get(String endpoint, String name, Class<T> type, T fallback) {
+        return environment.getProperty(prefix + endpoint + "." + name, type,
+                environment.getProperty(prefix + "default." + name, type, fallback));
+    }
+
+    static Counter rejected(MeterRegistry registry, String endpoint, String reason) {
+        return Counter.builder(REJECTED_METRIC_NAME)
+                .description("Requests turned away before reaching the controller")
+                .tag("endpoint", endpoint)
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
@@ -0,0 +1,52 @@
+package com.restapi.carMarket.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records a {@code cars.dao} timer around every repository call, tagged with the repository,
+ * the method and the exception it threw. Timers for successful calls are looked up once per method.
+ */
+public class DaoMetricsInterceptor implements MethodInterceptor {
+
+    static final String METRIC_NAME = "cars.dao";
+
+    private final MeterRegistry registry;
+    private final String repository;
+    private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+    public DaoMetricsInterceptor(MeterRegistry registry, Class<?> repositoryInterface) {
+        this.registry = registry;
+        this.repository = repositoryInterface.getSimpleName();
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        long start = registry.config().clock().monotonicTime();
+        try {
+            Object result = invocation.proceed();
+            timers.computeIfAbsent(invocation.getMethod(), method -> timer(method, "none"))
+                    .record(registry.config().clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (Throwable e) {
+            timer(invocation.getMethod(), e.getClass().getSimpleName())
+                    .record(registry.config().clock().monotonicTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    private Timer timer(Method method, String exception) {
+        return Timer.builder(METRIC_NAME)
+                .tag("repository", repository)
+                .tag("method", method.getName())
+                .tag("exception", exception)
+                .register(registry);
+    }
+}
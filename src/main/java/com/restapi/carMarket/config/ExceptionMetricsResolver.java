@@ -0,0 +1,42 @@
+package com.restapi.carMarket.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.Ordered;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Counts the application exceptions raised by request handlers in {@code cars.exceptions}
+ * and leaves the actual resolution to the resolvers that come after it.
+ */
+public class ExceptionMetricsResolver implements HandlerExceptionResolver, Ordered {
+
+    static final String METRIC_NAME = "cars.exceptions";
+    static final String EXCEPTIONS_PACKAGE = "com.restapi.carMarket.exceptions";
+
+    private final MeterRegistry registry;
+
+    public ExceptionMetricsResolver(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public ModelAndView resolveException(HttpServletRequest request, HttpServletResponse response,
+                                         Object handler, Exception e) {
+        if(EXCEPTIONS_PACKAGE.equals(e.getClass().getPackage().getName()))
+            Counter.builder(METRIC_NAME)
+                    .tag("exception", e.getClass().getSimpleName())
+                    .register(registry)
+                    .increment();
+        return null;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+}
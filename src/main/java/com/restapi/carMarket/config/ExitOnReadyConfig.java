@@ -0,0 +1,26 @@
+package com.restapi.carMarket.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+/**
+ * Shuts the application down as soon as it is ready to serve. The {@code cds} build profile starts it once
+ * this way to record which classes a startup loads.
+ */
+@Configuration
+@ConditionalOnProperty(name = "carmarket.exit-on-ready", havingValue = "true")
+public class ExitOnReadyConfig {
+
+    @Autowired
+    ApplicationContext context;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void exit() {
+        System.exit(SpringApplication.exit(context));
+    }
+}
@@ -0,0 +1,76 @@
+package com.restapi.carMarket.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.restapi.carMarket.model.Car;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands Hibernate's JCache region factory a Caffeine cache manager whose regions are sized from
+ * {@code carmarket.hibernate-cache.*}: one for {@link Car} entities and one for query results.
+ * The update timestamps region, against which cached query results are validated, never expires.
+ * The manager gets a URI of its own so several application contexts in one JVM do not share regions.
+ * <p>
+ * PUT, PATCH and DELETE are single bulk statements, and Hibernate cannot tell which rows a bulk statement
+ * touched, so each one empties the whole {@link Car} region rather than evicting one entry. Under steady
+ * write traffic the region therefore mostly misses; the {@code cars} cache in front of
+ * {@code CarService.findById} is evicted per id and keeps its hit rate.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    static final String QUERY_RESULTS_REGION = "default-query-results-region";
+    static final String UPDATE_TIMESTAMPS_REGION = "default-update-timestamps-region";
+
+    @Value("${carmarket.hibernate-cache.car.max-size:100000}")
+    long carMaxSize;
+
+    @Value("${carmarket.hibernate-cache.car.ttl-seconds:600}")
+    long carTtl;
+
+    @Value("${carmarket.hibernate-cache.query.max-size:10000}")
+    long queryMaxSize;
+
+    @Value("${carmarket.hibernate-cache.query.ttl-seconds:60}")
+    long queryTtl;
+
+    private CacheManager cacheManager;
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateCacheCustomizer() {
+        cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("carmarket-hibernate-" + UUID.randomUUID()), getClass().getClassLoader());
+        cacheManager.createCache(Car.class.getName(), region(carMaxSize, carTtl));
+        cacheManager.createCache(QUERY_RESULTS_REGION, region(queryMaxSize, queryTtl));
+        cacheManager.createCache(UPDATE_TIMESTAMPS_REGION, region(0, 0));
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    }
+
+    @PreDestroy
+    public void close() {
+        if(cacheManager != null)
+            cacheManager.close();
+    }
+
+    private static CaffeineConfiguration<Object, Object> region(long maxSize, long ttlSeconds) {
+        CaffeineConfiguration<Object, Object> region = new CaffeineConfiguration<>();
+        region.setStatisticsEnabled(true);
+        if(maxSize > 0)
+            region.setMaximumSize(OptionalLong.of(maxSize));
+        if(ttlSeconds > 0)
+            region.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+        return region;
+    }
+}
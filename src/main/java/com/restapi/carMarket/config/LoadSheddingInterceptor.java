@@ -0,0 +1,126 @@
+package com.restapi.carMarket.config;
+
+import com.restapi.carMarket.exceptions.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers 503 right away instead of queueing when the service is saturated: when more than
+ * {@code carmarket.load-shedding.max-pool-waiters} threads already wait for a connection in any
+ * Hikari pool, or when an endpoint already has {@code carmarket.load-shedding.<endpoint>.max-concurrent}
+ * requests in flight, counted per handler method. A request stops counting as in flight once its handler goes async, as long polls,
+ * event streams and exports do, since it no longer holds a request thread then.
+ */
+public class LoadSheddingInterceptor implements AsyncHandlerInterceptor {
+
+    static final String POOL_PENDING_METRIC_NAME = "hikaricp.connections.pending";
+
+    private static final String ADMITTED = LoadSheddingInterceptor.class.getName() + ".ADMITTED";
+    private static final long POOL_SEARCH_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final AdmissionSettings settings;
+    private final MeterRegistry registry;
+    private final int maxPoolWaiters;
+    private final Map<Method, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private volatile Collection<Gauge> pools = List.of();
+    private volatile long poolsSearched = System.nanoTime() - POOL_SEARCH_INTERVAL;
+
+    public LoadSheddingInterceptor(Environment environment, MeterRegistry registry) {
+        this.settings = new AdmissionSettings(environment, "carmarket.load-shedding.");
+        this.registry = registry;
+        this.maxPoolWaiters = environment.getProperty("carmarket.load-shedding.max-pool-waiters", Integer.class, 0);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if(request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod))
+            return true;
+        Endpoint endpoint = endpoints.computeIfAbsent(((HandlerMethod) handler).getMethod(), method -> endpoint(method.getName()));
+
+        if(maxPoolWaiters > 0 && poolWaiters() > maxPoolWaiters)
+            throw reject(response, endpoint.poolRejected);
+        if(endpoint.maxConcurrent > 0) {
+            if(endpoint.inFlight.incrementAndGet() > endpoint.maxConcurrent) {
+                endpoint.inFlight.decrementAndGet();
+                throw reject(response, endpoint.concurrencyRejected);
+            }
+            request.setAttribute(ADMITTED, endpoint);
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        release(request);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception e) {
+        release(request);
+    }
+
+    private void release(HttpServletRequest request) {
+        Endpoint endpoint = (Endpoint) request.getAttribute(ADMITTED);
+        if(endpoint != null) {
+            request.removeAttribute(ADMITTED);
+            endpoint.inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Most threads waiting on any one pool. Pools register their gauges when they start, so the
+     * registry is searched again at most once a second.
+     */
+    private int poolWaiters() {
+        long now = System.nanoTime();
+        if(now - poolsSearched >= POOL_SEARCH_INTERVAL) {
+            pools = registry.find(POOL_PENDING_METRIC_NAME).gauges();
+            poolsSearched = now;
+        }
+        int waiters = 0;
+        for(Gauge pool : pools)
+            waiters = Math.max(waiters, (int) pool.value());
+        return waiters;
+    }
+
+    private static ServiceOverloadedException reject(HttpServletResponse response, Counter rejected) {
+        rejected.increment();
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        return new ServiceOverloadedException();
+    }
+
+    private Endpoint endpoint(String name) {
+        return new Endpoint(settings.get(name, "max-concurrent", Integer.class, 0),
+                AdmissionSettings.rejected(registry, name, "concurrency"),
+                AdmissionSettings.rejected(registry, name, "db_pool"));
+    }
+
+    private static final class Endpoint {
+        final int maxConcurrent;
+        final Counter concurrencyRejected;
+        final Counter poolRejected;
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        Endpoint(int maxConcurrent, Counter concurrencyRejected, Counter poolRejected) {
+            this.maxConcurrent = maxConcurrent;
+            this.concurrencyRejected = concurrencyRejected;
+            this.poolRejected = poolRejected;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.restapi.carMarket.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.Repository;
+
+import java.util.Arrays;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public static BeanPostProcessor daoMetricsPostProcessor(ObjectProvider<MeterRegistry> registry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if(bean instanceof Repository && bean instanceof Advised) {
+                    Advised repository = (Advised) bean;
+                    Class<?> repositoryInterface = Arrays.stream(repository.getProxiedInterfaces())
+                            .filter(Repository.class::isAssignableFrom)
+                            .findFirst().orElse(Repository.class);
+                    repository.addAdvice(0, new DaoMetricsInterceptor(registry.getObject(), repositoryInterface));
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public ExceptionMetricsResolver exceptionMetricsResolver(MeterRegistry registry) {
+        return new ExceptionMetricsResolver(registry);
+    }
+}
@@ -0,0 +1,95 @@
+package com.restapi.carMarket.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.restapi.carMarket.exceptions.RateLimitExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Gives every client a {@link TokenBucket} per endpoint and answers 429 with a Retry-After header once it
+ * runs dry. Clients are told apart by their {@code X-API-Key} header when it holds one of the keys in
+ * {@code carmarket.rate-limit.api-keys}, and by remote address otherwise, so inventing keys buys no extra buckets.
+ * Endpoints are named after their {@code CarController} method, e.g. {@code findAll}, and take
+ * {@code carmarket.rate-limit.<endpoint>.permits-per-second} and {@code .burst}, falling back to
+ * {@code carmarket.rate-limit.default.*}; a rate of 0 leaves the endpoint unlimited. Overloaded methods share
+ * their settings but each gets buckets of its own, so handlers should have names of their own.
+ * Buckets live in a Caffeine cache, so lookups are lock-striped and idle clients are forgotten.
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    static final String API_KEY_HEADER = "X-API-Key";
+
+    private final AdmissionSettings settings;
+    private final MeterRegistry registry;
+    private final Set<String> apiKeys;
+    private final Map<Method, Limit> limits = new ConcurrentHashMap<>();
+    private final Cache<String, TokenBucket> buckets;
+
+    public RateLimitInterceptor(Environment environment, MeterRegistry registry) {
+        this.settings = new AdmissionSettings(environment, "carmarket.rate-limit.");
+        this.registry = registry;
+        this.apiKeys = Arrays.stream(environment.getProperty("carmarket.rate-limit.api-keys", String[].class, new String[0]))
+                .map(String::trim).filter(key -> !key.isEmpty()).collect(Collectors.toSet());
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(environment.getProperty("carmarket.rate-limit.max-clients", Long.class, 100_000L))
+                .expireAfterAccess(Duration.ofMinutes(10))
+                .build();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if(request.getDispatcherType() != DispatcherType.REQUEST || !(handler instanceof HandlerMethod))
+            return true;
+        Limit limit = limits.computeIfAbsent(((HandlerMethod) handler).getMethod(), this::limit);
+        if(limit.permitsPerSecond <= 0)
+            return true;
+
+        String client = request.getHeader(API_KEY_HEADER);
+        String key = limit.handler + '|' + (client != null && apiKeys.contains(client) ? "key:" + client : "ip:" + request.getRemoteAddr());
+        long wait = buckets.get(key, k -> new TokenBucket(limit.permitsPerSecond, limit.burst)).tryAcquire(System.nanoTime());
+        if(wait == 0)
+            return true;
+
+        limit.rejected.increment();
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999L))));
+        throw new RateLimitExceededException();
+    }
+
+    private Limit limit(Method method) {
+        String endpoint = method.getName();
+        return new Limit(method.toGenericString(), settings.get(endpoint, "permits-per-second", Double.class, 0.0),
+                settings.get(endpoint, "burst", Integer.class, 1),
+                AdmissionSettings.rejected(registry, endpoint, "rate_limit"));
+    }
+
+    private static final class Limit {
+        final String handler;
+        final double permitsPerSecond;
+        final int burst;
+        final Counter rejected;
+
+        Limit(String handler, double permitsPerSecond, int burst, Counter rejected) {
+            this.handler = handler;
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+            this.rejected = rejected;
+        }
+    }
+}
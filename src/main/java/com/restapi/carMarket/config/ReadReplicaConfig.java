@@ -0,0 +1,91 @@
+package com.restapi.carMarket.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single datasource with a {@link ReplicaRoutingDataSource} when
+ * {@code carmarket.datasource.replica-urls} lists the JDBC urls of one or more read replicas.
+ * The primary keeps its {@code spring.datasource} settings; replicas use the same credentials
+ * unless {@code carmarket.datasource.replica-username} and {@code replica-password} say otherwise.
+ */
+@Configuration
+@ConditionalOnProperty(name = "carmarket.datasource.replica-urls")
+public class ReadReplicaConfig {
+
+    @Value("${carmarket.datasource.replica-urls}")
+    String[] replicaUrls;
+
+    @Value("${carmarket.datasource.replica-username:${spring.datasource.username:}}")
+    String replicaUsername;
+
+    @Value("${carmarket.datasource.replica-password:${spring.datasource.password:}}")
+    String replicaPassword;
+
+    @Value("${carmarket.datasource.replica-connection-timeout-ms:1000}")
+    long replicaConnectionTimeout;
+
+    @Autowired
+    ObjectProvider<MeterRegistry> meterRegistry;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        track(primary);
+
+        List<DataSource> replicas = new ArrayList<>();
+        for(String url : replicaUrls) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setJdbcUrl(url.trim());
+            replica.setUsername(replicaUsername);
+            replica.setPassword(replicaPassword);
+            replica.setConnectionTimeout(replicaConnectionTimeout);
+            track(replica);
+            replicas.add(replica);
+        }
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas);
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    /**
+     * Boot only binds pool metrics for a datasource that is itself a Hikari pool, so the pools behind
+     * the routing datasource report theirs directly.
+     */
+    private void track(HikariDataSource pool) {
+        meterRegistry.ifAvailable(registry -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+    }
+
+    @Scheduled(fixedDelayString = "${carmarket.datasource.replica-check-interval-ms:5000}")
+    public void checkReplicas() {
+        if(routingDataSource != null)
+            routingDataSource.checkReplicas();
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if(routingDataSource != null)
+            routingDataSource.close();
+    }
+}
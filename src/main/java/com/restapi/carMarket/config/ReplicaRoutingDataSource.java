@@ -0,0 +1,169 @@
+package com.restapi.carMarket.config;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Hands out connections to one of the replicas, chosen round-robin among the healthy ones, for
+ * read-only transactions, and to the primary for everything else. Once a request has opened a
+ * read-write transaction, its later reads go to the primary too, so it always sees its own writes.
+ * A replica that fails to hand out a connection is skipped until {@link #checkReplicas} finds it
+ * working again; with no healthy replica left, reads fall back to the primary. Reads that fill a cache
+ * go to the primary as well, see {@link #readFromPrimary}, and sessions reading from a replica do not
+ * put what they read into the second-level or query cache.
+ * <p>
+ * The transaction's read-only flag is only set after the connection would normally be acquired,
+ * so this has to sit behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements Closeable {
+
+    static final String PRIMARY_PINNED = ReplicaRoutingDataSource.class.getName() + ".PRIMARY_PINNED";
+    private static final ThreadLocal<Boolean> READ_FROM_PRIMARY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).collect(Collectors.toList());
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connect(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connect(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection connect(Connector connector) throws SQLException {
+        if(!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if(TransactionSynchronizationManager.isActualTransactionActive())
+                pinPrimary();
+            return connector.connect(primary);
+        }
+        if(isPrimaryPinned() || isReadingFromPrimary())
+            return connector.connect(primary);
+
+        for(int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if(!replica.healthy)
+                continue;
+            Connection connection;
+            try {
+                connection = connector.connect(replica.dataSource);
+            } catch (SQLException | RuntimeException e) {
+                replica.healthy = false;
+                continue;
+            }
+            keepOutOfCaches();
+            return connection;
+        }
+        return connector.connect(primary);
+    }
+
+    /**
+     * Lets the sessions of the current transaction read the second-level and query caches but not fill them,
+     * since those caches also answer primary reads and must not hold a copy a replica has not caught up on.
+     */
+    private static void keepOutOfCaches() {
+        for(Object resource : TransactionSynchronizationManager.getResourceMap().values())
+            if(resource instanceof EntityManagerHolder)
+                ((EntityManagerHolder) resource).getEntityManager().unwrap(Session.class).setCacheMode(CacheMode.GET);
+    }
+
+    /**
+     * Probes every replica and takes those that answer back into rotation.
+     */
+    public void checkReplicas() {
+        for(Replica replica : replicas) {
+            try(Connection connection = replica.dataSource.getConnection()) {
+                replica.healthy = connection.isValid(1);
+            } catch (SQLException | RuntimeException e) {
+                replica.healthy = false;
+            }
+        }
+    }
+
+    public int healthyReplicas() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(primary instanceof Closeable)
+            ((Closeable) primary).close();
+        for(Replica replica : replicas)
+            if(replica.dataSource instanceof Closeable)
+                ((Closeable) replica.dataSource).close();
+    }
+
+    /**
+     * Whether the current request wrote through the primary and so has to keep reading from it.
+     */
+    public static boolean isPrimaryPinned() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null && attributes.getAttribute(PRIMARY_PINNED, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+
+    /**
+     * Runs {@code read} with the connections it opens taken from the primary, for reads whose result
+     * is cached and so must not be a copy a replica has not caught up on yet. Such reads should also
+     * bypass the second-level cache, see {@link #isReadingFromPrimary}.
+     */
+    public static <T> T readFromPrimary(Supplier<T> read) {
+        if(READ_FROM_PRIMARY.get() != null)
+            return read.get();
+        READ_FROM_PRIMARY.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            READ_FROM_PRIMARY.remove();
+        }
+    }
+
+    /**
+     * Whether the current thread runs inside {@link #readFromPrimary}.
+     */
+    public static boolean isReadingFromPrimary() {
+        return READ_FROM_PRIMARY.get() != null;
+    }
+
+    private static void pinPrimary() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if(attributes != null)
+            attributes.setAttribute(PRIMARY_PINNED, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    @FunctionalInterface
+    private interface Connector {
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+
+    private static final class Replica {
+        final DataSource dataSource;
+        volatile boolean healthy = true;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
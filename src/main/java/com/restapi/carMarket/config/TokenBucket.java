@@ -0,0 +1,36 @@
+package com.restapi.carMarket.config;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket kept as a single theoretical arrival time (the generic cell rate algorithm): a request
+ * is admitted while that time is less than a full burst ahead of now, and each admitted request pushes
+ * it one emission interval further. Admission is a single compare-and-set, so buckets never block.
+ */
+public final class TokenBucket {
+
+    private final long interval;
+    private final long tolerance;
+    private final AtomicLong arrival = new AtomicLong(Long.MIN_VALUE);
+
+    public TokenBucket(double permitsPerSecond, int burst) {
+        this.interval = (long) (1_000_000_000L / permitsPerSecond);
+        this.tolerance = interval * (Math.max(1, burst) - 1);
+    }
+
+    /**
+     * Takes a token at {@code now} (in nanoseconds) and returns 0, or, when the bucket is empty,
+     * leaves it untouched and returns the nanoseconds until the next token is available.
+     */
+    public long tryAcquire(long now) {
+        while(true) {
+            long current = arrival.get();
+            long start = Math.max(current, now);
+            long wait = start - now - tolerance;
+            if(wait > 0)
+                return wait;
+            if(arrival.compareAndSet(current, start + interval))
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.restapi.carMarket.dao;
+
+import com.restapi.carMarket.model.ArchivedCar;
+import com.restapi.carMarket.model.CarView;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ArchivedCarDao extends JpaRepository<ArchivedCar, Long> {
+
+    @Query("select new com.restapi.carMarket.model.CarView(a.id, a.brand, a.model, a.year, a.price," +
+            " a.postTime, a.modifiedTime, a.version) from ArchivedCar a where a.id > :id order by a.id")
+    List<CarView> findViewsByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query(value = "insert into car_archive (id, brand, model, year, price, post_time, modified_time, version, archived_time)" +
+            " select id, brand, model, year, price, post_time, modified_time, version, :archivedTime from car where id in :ids",
+            nativeQuery = true)
+    int copyCars(@Param("ids") Collection<Long> ids, @Param("archivedTime") LocalDateTime archivedTime);
+}
@@ -0,0 +1,33 @@
+package com.restapi.carMarket.dao;
+
+import com.restapi.carMarket.model.CarChange;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface CarChangeDao extends JpaRepository<CarChange, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from CarChange c where c.seq is null order by c.id")
+    List<CarChange> findUnpublished(Pageable pageable);
+
+    @Query("select coalesce(max(c.seq), 0) from CarChange c")
+    long findLastSeq();
+
+    List<CarChange> findBySeqGreaterThanOrderBySeqAsc(Long seq, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from CarChange c where c.seq is not null and c.time < :before")
+    int deletePublishedBefore(@Param("before") LocalDateTime before);
+}
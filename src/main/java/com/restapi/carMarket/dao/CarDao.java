@@ -1,9 +1,102 @@
 package com.restapi.carMarket.dao;
 
 import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarExportRow;
+import com.restapi.carMarket.model.CarView;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_MODE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 @Repository
-public interface CarDao extends JpaRepository<Car,Long> {
+public interface CarDao extends JpaRepository<Car,Long>, CarSearchDao, CarUpdateDao, CarMultiLoadDao {
+
+    @Query("select new com.restapi.carMarket.model.CarView(c.id, c.brand, c.model, c.year, c.price," +
+            " c.postTime, c.modifiedTime, c.version) from Car c where c.id > :id order by c.id")
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    List<CarView> findViewsByIdGreaterThan(@Param("id") Long id, Pageable pageable);
+
+    @Query("select new com.restapi.carMarket.model.CarView(c.id, c.brand, c.model, c.year, c.price," +
+            " c.postTime, c.modifiedTime, c.version) from Car c where c.id in :ids")
+    List<CarView> findViewsByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select c from Car c order by c.id")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHE_MODE, value = "IGNORE")})
+    Stream<Car> streamAll();
+
+    @Query("select new com.restapi.carMarket.model.CarExportRow(c.id, c.brand, c.model, c.year, c.price," +
+            " c.postTime, c.modifiedTime) from Car c order by c.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<CarExportRow> streamExport();
+
+    @Query("select new com.restapi.carMarket.model.CarExportRow(c.id, c.brand, c.model, c.year, c.price," +
+            " c.postTime, c.modifiedTime) from Car c where c.modifiedTime >= :since order by c.modifiedTime, c.id")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    Stream<CarExportRow> streamExportModifiedSince(@Param("since") LocalDateTime since);
+
+    @Transactional
+    @Modifying
+    @Query("update Car c set c.brand = :#{#car.brand}, c.model = :#{#car.model}, c.year = :#{#car.year}," +
+            " c.price = :#{#car.price}, c.modifiedTime = :#{#car.modifiedTime}, c.version = c.version + 1" +
+            " where c.id = :id")
+    int updateCar(@Param("id") Long id, @Param("car") Car car);
+
+    @Transactional
+    @Modifying
+    @Query("update Car c set c.brand = :#{#car.brand}, c.model = :#{#car.model}, c.year = :#{#car.year}," +
+            " c.price = :#{#car.price}, c.modifiedTime = :#{#car.modifiedTime}, c.version = c.version + 1" +
+            " where c.id = :id and c.version = :#{#car.version}")
+    int updateCarWithVersion(@Param("id") Long id, @Param("car") Car car);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Car c where c.id = :id")
+    int deleteCarById(@Param("id") Long id);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Car c where c.id in :ids")
+    int deleteCarsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Oldest cars first, locked so that no update commits between their copy to the archive and their delete.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c.id from Car c where c.postTime < :before order by c.postTime, c.id")
+    List<Long> findIdsPostedBefore(@Param("before") LocalDateTime before, Pageable pageable);
+
+    @Query("select c.id from Car c where c.brand = :#{#car.brand} and c.model = :#{#car.model}" +
+            " and c.year = :#{#car.year} and c.price = :#{#car.price} order by c.id")
+    List<Long> findIdsMatching(@Param("car") Car car, Pageable pageable);
+
+    @Query("select c.id from Car c where c.brand = :#{#car.brand} and c.model = :#{#car.model}" +
+            " and c.year = :#{#car.year} and c.price = :#{#car.price}" +
+            " and c.postTime >= :from and c.postTime < :to order by c.id")
+    List<Long> findIdsMatchingPostedBetween(@Param("car") Car car, @Param("from") LocalDateTime from,
+                                            @Param("to") LocalDateTime to, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from Car c where c.id = :id and c.brand = :#{#car.brand} and c.model = :#{#car.model}" +
+            " and c.year = :#{#car.year} and c.price = :#{#car.price}")
+    int deleteCarMatching(@Param("id") Long id, @Param("car") Car car);
 }
@@ -0,0 +1,16 @@
+package com.restapi.carMarket.dao;
+
+import com.restapi.carMarket.model.Car;
+
+import java.util.List;
+
+public interface CarMultiLoadDao {
+
+    /**
+     * The cars with the given ids, in the same order and with null for ids that do not exist. Cars already in the
+     * persistence context or the second-level cache are taken from there, all others are read in one IN query.
+     * Inside {@link com.restapi.carMarket.config.ReplicaRoutingDataSource#readFromPrimary} the second-level
+     * cache is skipped and refreshed with what the primary returns.
+     */
+    List<Car> multiLoad(List<Long> ids);
+}
@@ -0,0 +1,30 @@
+package com.restapi.carMarket.dao;
+
+import com.restapi.carMarket.config.ReplicaRoutingDataSource;
+import com.restapi.carMarket.model.Car;
+import org.hibernate.CacheMode;
+import org.hibernate.MultiIdentifierLoadAccess;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+
+public class CarMultiLoadDaoImpl implements CarMultiLoadDao {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Car> multiLoad(List<Long> ids) {
+        MultiIdentifierLoadAccess<Car> load = entityManager.unwrap(Session.class).byMultipleIds(Car.class)
+                .enableSessionCheck(true)
+                .withBatchSize(ids.size());
+        // a read for a cache reads the primary rather than the second-level cache, and refreshes the latter
+        if(ReplicaRoutingDataSource.isReadingFromPrimary())
+            load.with(CacheMode.REFRESH);
+        return load.multiLoad(ids);
+    }
+}
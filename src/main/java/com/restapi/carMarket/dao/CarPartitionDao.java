@@ -0,0 +1,109 @@
+package com.restapi.carMarket.dao;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The monthly partitions of the car table, named {@code car_pYYYY_MM}, as the PostgreSQL migrations lay them out.
+ * On any other database the table is not partitioned and {@link #isPartitioned} is false.
+ * <p>
+ * Creating and dropping a month take ACCESS EXCLUSIVE locks, which block every read and write of the table
+ * while they are held or waited for. They wait at most {@code carmarket.archive.lock-timeout-ms} and then fail
+ * with a {@link org.springframework.dao.CannotAcquireLockException}, so a busy table is retried next run
+ * rather than stalled behind a long transaction.
+ */
+@Repository
+public class CarPartitionDao {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final String PREFIX = "car_p";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Value("${carmarket.archive.lock-timeout-ms:2000}")
+    long lockTimeout;
+
+    public boolean isPartitioned() {
+        Boolean postgres = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection ->
+                "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName()));
+        return Boolean.TRUE.equals(postgres) && jdbcTemplate.queryForObject("select count(*) from pg_partitioned_table p" +
+                " join pg_class c on c.oid = p.partrelid where c.relname = 'car'", Integer.class) > 0;
+    }
+
+    public List<YearMonth> findMonths() {
+        return jdbcTemplate.queryForList("select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid" +
+                " join pg_class p on p.oid = i.inhparent where p.relname = 'car' and c.relname like 'car\\_p%'", String.class)
+                .stream()
+                .map(name -> YearMonth.parse(name.substring(PREFIX.length()), SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates the partition of the month unless it exists. Cars of that month posted before it existed sit in
+     * the default partition, which would make the new partition fail to attach, so they are moved into it first.
+     */
+    @Transactional
+    public void createMonth(YearMonth month) {
+        if(exists(month))
+            return;
+        limitLockWait();
+        jdbcTemplate.execute("lock table car_default in access exclusive mode");
+        // another instance may have created it while this one waited for the lock
+        if(exists(month))
+            return;
+        String name = name(month);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        jdbcTemplate.execute("create table " + name + " (like car including defaults)");
+        jdbcTemplate.execute(String.format("with moved as (delete from car_default where post_time >= '%s' and post_time < '%s'" +
+                " returning *) insert into %s select * from moved", from, to, name));
+        jdbcTemplate.execute(String.format("alter table car attach partition %s for values from ('%s') to ('%s')", name, from, to));
+    }
+
+    /**
+     * Drops the partition of the month unless it still holds cars. A month that holds cars is left without
+     * taking any exclusive lock. Otherwise the table and then the partition are locked and the check repeated,
+     * so no car can be inserted into it between the check and the drop; both checks stop at the first row.
+     */
+    @Transactional
+    public boolean dropMonthIfEmpty(YearMonth month) {
+        limitLockWait();
+        if(hasCars(month))
+            return false;
+        jdbcTemplate.execute("lock table only car in access exclusive mode");
+        jdbcTemplate.execute("lock table " + name(month) + " in access exclusive mode");
+        if(hasCars(month))
+            return false;
+        jdbcTemplate.execute("drop table " + name(month));
+        return true;
+    }
+
+    // ends with the transaction, so pooled connections keep the default
+    private void limitLockWait() {
+        jdbcTemplate.execute("set local lock_timeout = " + lockTimeout);
+    }
+
+    private boolean hasCars(YearMonth month) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("select exists (select 1 from " + name(month) + ")", Boolean.class));
+    }
+
+    private boolean exists(YearMonth month) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("select to_regclass(?) is not null", Boolean.class, name(month)));
+    }
+
+    private static String name(YearMonth month) {
+        return PREFIX + month.format(SUFFIX);
+    }
+}
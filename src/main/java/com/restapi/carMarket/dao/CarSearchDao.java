@@ -0,0 +1,15 @@
+package com.restapi.carMarket.dao;
+
+import com.restapi.carMarket.model.CarSearch;
+import com.restapi.carMarket.model.CarView;
+
+import java.util.List;
+
+public interface CarSearchDao {
+
+    /**
+     * Returns at most {@code limit} cars matching the search, ordered by the search sort key and id.
+     * When {@code afterId} is set only rows strictly after ({@code afterValue}, {@code afterId}) are returned.
+     */
+    List<CarView> search(CarSearch search, Integer afterValue, Long afterId, int limit);
+}
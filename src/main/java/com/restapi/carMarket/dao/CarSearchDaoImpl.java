@@ -0,0 +1,61 @@
+package com.restapi.carMarket.dao;
+
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarSearch;
+import com.restapi.carMarket.model.CarView;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
+public class CarSearchDaoImpl implements CarSearchDao {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    public List<CarView> search(CarSearch search, Integer afterValue, Long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<CarView> query = cb.createQuery(CarView.class);
+        Root<Car> car = query.from(Car.class);
+        List<Predicate> predicates = new ArrayList<>();
+
+        if(search.getBrand() != null)
+            predicates.add(cb.equal(car.get("brand"), search.getBrand()));
+        if(search.getModel() != null)
+            predicates.add(cb.equal(car.get("model"), search.getModel()));
+        if(search.getMinYear() != null)
+            predicates.add(cb.greaterThanOrEqualTo(car.get("year"), search.getMinYear()));
+        if(search.getMaxYear() != null)
+            predicates.add(cb.lessThanOrEqualTo(car.get("year"), search.getMaxYear()));
+        if(search.getMinPrice() != null)
+            predicates.add(cb.greaterThanOrEqualTo(car.get("price"), search.getMinPrice()));
+        if(search.getMaxPrice() != null)
+            predicates.add(cb.lessThanOrEqualTo(car.get("price"), search.getMaxPrice()));
+
+        boolean ascending = search.isAscending();
+        Path<Long> id = car.get("id");
+
+        if("id".equals(search.getSort())) {
+            if(afterId != null)
+                predicates.add(ascending ? cb.greaterThan(id, afterId) : cb.lessThan(id, afterId));
+            query.orderBy(ascending ? cb.asc(id) : cb.desc(id));
+        } else {
+            Path<Integer> key = car.get(search.getSort());
+            if(afterId != null)
+                predicates.add(cb.or(
+                        ascending ? cb.greaterThan(key, afterValue) : cb.lessThan(key, afterValue),
+                        cb.and(cb.equal(key, afterValue), ascending ? cb.greaterThan(id, afterId) : cb.lessThan(id, afterId))));
+            query.orderBy(ascending ? cb.asc(key) : cb.desc(key), ascending ? cb.asc(id) : cb.desc(id));
+        }
+
+        query.select(cb.construct(CarView.class, id, car.get("brand"), car.get("model"), car.get("year"), car.get("price"),
+                car.get("postTime"), car.get("modifiedTime"), car.get("version")));
+        query.where(predicates.toArray(new Predicate[0]));
+        return entityManager.createQuery(query).setMaxResults(limit).setHint(HINT_CACHEABLE, true).getResultList();
+    }
+}
@@ -0,0 +1,14 @@
+package com.restapi.carMarket.dao;
+
+import com.restapi.carMarket.model.CarPatch;
+
+import java.time.LocalDateTime;
+
+public interface CarUpdateDao {
+
+    /**
+     * Sets only the non-null fields of the patch and the modification time and bumps the version in a single UPDATE.
+     * When the patch carries a version the row is only updated if it still has that version.
+     */
+    int patch(Long id, CarPatch patch, LocalDateTime modifiedTime);
+}
@@ -0,0 +1,46 @@
+package com.restapi.carMarket.dao;
+
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarPatch;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import java.time.LocalDateTime;
+
+public class CarUpdateDaoImpl implements CarUpdateDao {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int patch(Long id, CarPatch patch, LocalDateTime modifiedTime) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Car> update = cb.createCriteriaUpdate(Car.class);
+        Root<Car> car = update.from(Car.class);
+        Path<Long> version = car.get("version");
+
+        if(patch.getBrand() != null)
+            update.set(car.<String>get("brand"), patch.getBrand());
+        if(patch.getModel() != null)
+            update.set(car.<String>get("model"), patch.getModel());
+        if(patch.getYear() != null)
+            update.set(car.<Integer>get("year"), patch.getYear());
+        if(patch.getPrice() != null)
+            update.set(car.<Integer>get("price"), patch.getPrice());
+        update.set(car.<LocalDateTime>get("modifiedTime"), modifiedTime);
+        update.set(version, cb.sum(version, 1L));
+
+        if(patch.getVersion() != null)
+            update.where(cb.equal(car.get("id"), id), cb.equal(version, patch.getVersion()));
+        else
+            update.where(cb.equal(car.get("id"), id));
+
+        return entityManager.createQuery(update).executeUpdate();
+    }
+}
@@ -0,0 +1,9 @@
+package com.restapi.carMarket.dao;
+
+import com.restapi.carMarket.model.SavedSearch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SavedSearchDao extends JpaRepository<SavedSearch, Long> {
+}
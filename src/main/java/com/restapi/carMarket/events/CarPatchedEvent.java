@@ -0,0 +1,31 @@
+package com.restapi.carMarket.events;
+
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarPatch;
+
+/**
+ * The patch as requested and the car as it was committed.
+ */
+public class CarPatchedEvent {
+    private final Long id;
+    private final CarPatch patch;
+    private final Car car;
+
+    public CarPatchedEvent(Long id, CarPatch patch, Car car) {
+        this.id = id;
+        this.patch = patch;
+        this.car = car;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public CarPatch getPatch() {
+        return patch;
+    }
+
+    public Car getCar() {
+        return car;
+    }
+}
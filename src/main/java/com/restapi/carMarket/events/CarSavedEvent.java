@@ -0,0 +1,24 @@
+package com.restapi.carMarket.events;
+
+import com.restapi.carMarket.model.Car;
+
+/**
+ * A car as it was committed by an insert or an update.
+ */
+public class CarSavedEvent {
+    private final Long id;
+    private final Car car;
+
+    public CarSavedEvent(Long id, Car car) {
+        this.id = id;
+        this.car = car;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Car getCar() {
+        return car;
+    }
+}
@@ -0,0 +1,22 @@
+package com.restapi.carMarket.events;
+
+import java.util.Collection;
+
+/**
+ * The ids of the deleted cars.
+ */
+public class CarsDeletedEvent {
+    private final Collection<Long> ids;
+
+    private CarsDeletedEvent(Collection<Long> ids) {
+        this.ids = ids;
+    }
+
+    public static CarsDeletedEvent ofIds(Collection<Long> ids) {
+        return new CarsDeletedEvent(ids);
+    }
+
+    public Collection<Long> getIds() {
+        return ids;
+    }
+}
@@ -0,0 +1,8 @@
+package com.restapi.carMarket.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class CarSearchNotValidException extends RuntimeException {
+}
@@ -0,0 +1,70 @@
+package com.restapi.carMarket.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import org.hibernate.annotations.Immutable;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.time.LocalDateTime;
+
+/**
+ * A listing the archival job moved out of the car table, as it was when it was archived.
+ * Rows are only ever written by that job's bulk copy, so the entity is read-only.
+ */
+@Entity
+@Immutable
+@Table(name = "car_archive")
+public class ArchivedCar {
+    @Id
+    private Long id;
+    private String brand;
+    private String model;
+    private int year;
+    private int price;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime postTime;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime modifiedTime;
+    private Long version;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime archivedTime;
+
+    public ArchivedCar(){}
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    public LocalDateTime getPostTime() {
+        return postTime;
+    }
+
+    public LocalDateTime getModifiedTime() {
+        return modifiedTime;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public LocalDateTime getArchivedTime() {
+        return archivedTime;
+    }
+}
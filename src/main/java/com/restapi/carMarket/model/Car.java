@@ -4,6 +4,8 @@ package com.restapi.carMarket.model;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
@@ -11,11 +13,20 @@ import javax.validation.constraints.NotNull;
 import java.time.LocalDateTime;
 
 @Entity
-@ToString(of = {"id", "brand","model", "year", "price","postTime"})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = {
+        @Index(name = "idx_car_brand_model_year_price", columnList = "brand, model, year, price"),
+        @Index(name = "idx_car_brand_model_price", columnList = "brand, model, price"),
+        @Index(name = "idx_car_post_time", columnList = "postTime"),
+        @Index(name = "idx_car_modified_time", columnList = "modifiedTime, id")
+})
+@ToString(of = {"id", "brand","model", "year", "price","postTime", "modifiedTime", "version"})
 @EqualsAndHashCode(of = {"brand","model", "year", "price","postTime"})
 public class Car {
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "car_seq")
+    @SequenceGenerator(name = "car_seq", sequenceName = "car_seq", allocationSize = 50)
     private Long id;
     @NotBlank
     @NotNull
@@ -27,9 +38,14 @@ public class Car {
     private String model;
     private int year;
     private int price;
-    @Column(updatable = false)
+    @Column(updatable = false, nullable = false)
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime postTime;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime modifiedTime;
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private Long version;
 
     public Car(){}
 
@@ -41,6 +57,15 @@ public class Car {
         postTime = LocalDateTime.now();
     }
 
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        modifiedTime = LocalDateTime.now();
+        // the post time partitions the table, so a car posted without one is posted now
+        if(postTime == null)
+            postTime = modifiedTime;
+    }
+
     public Long getId() {
         return id;
     }
@@ -88,4 +113,20 @@ public class Car {
     public void setPostTime(LocalDateTime postTime) {
         this.postTime = postTime;
     }
+
+    public LocalDateTime getModifiedTime() {
+        return modifiedTime;
+    }
+
+    public void setModifiedTime(LocalDateTime modifiedTime) {
+        this.modifiedTime = modifiedTime;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,29 @@
+package com.restapi.carMarket.model;
+
+/**
+ * Tells the owner of saved search {@code searchId} about a car that now matches it. Alert seqs only grow,
+ * also across restarts, so they can be used to resume a feed.
+ */
+public final class CarAlert {
+    private final long seq;
+    private final long searchId;
+    private final CarView car;
+
+    public CarAlert(long seq, long searchId, CarView car) {
+        this.seq = seq;
+        this.searchId = searchId;
+        this.car = car;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public long getSearchId() {
+        return searchId;
+    }
+
+    public CarView getCar() {
+        return car;
+    }
+}
@@ -0,0 +1,49 @@
+package com.restapi.carMarket.model;
+
+public class CarBatchResult {
+    public enum Status { CREATED, INVALID }
+
+    private int index;
+    private Long id;
+    private Status status;
+
+    public CarBatchResult(){}
+
+    public CarBatchResult(int index, Long id, Status status) {
+        this.index = index;
+        this.id = id;
+        this.status = status;
+    }
+
+    public static CarBatchResult created(int index, Car car) {
+        return new CarBatchResult(index, car.getId(), Status.CREATED);
+    }
+
+    public static CarBatchResult invalid(int index) {
+        return new CarBatchResult(index, null, Status.INVALID);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+}
@@ -0,0 +1,92 @@
+package com.restapi.carMarket.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * One committed write to a car, appended to the outbox in the writing transaction.
+ * {@code seq} stays null until the relay publishes the change; published changes are
+ * numbered without gaps in the order consumers see them.
+ */
+@Entity
+@Table(indexes = @Index(name = "idx_car_change_seq", columnList = "seq", unique = true))
+public class CarChange {
+    public enum Type { SAVED, PATCHED, DELETED }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "car_change_id_seq")
+    @SequenceGenerator(name = "car_change_id_seq", sequenceName = "car_change_id_seq", allocationSize = 50)
+    @JsonIgnore
+    private Long id;
+    private Long seq;
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+    private long carId;
+    @Column(length = 4000)
+    @JsonRawValue
+    private String data;
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime time;
+
+    public CarChange(){}
+
+    public CarChange(Type type, long carId, String data) {
+        this.type = type;
+        this.carId = carId;
+        this.data = data;
+        time = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public long getCarId() {
+        return carId;
+    }
+
+    public void setCarId(long carId) {
+        this.carId = carId;
+    }
+
+    public String getData() {
+        return data;
+    }
+
+    public void setData(String data) {
+        this.data = data;
+    }
+
+    public LocalDateTime getTime() {
+        return time;
+    }
+
+    public void setTime(LocalDateTime time) {
+        this.time = time;
+    }
+}
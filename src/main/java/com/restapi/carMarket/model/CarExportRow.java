@@ -0,0 +1,55 @@
+package com.restapi.carMarket.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * One car as written by the bulk export, read straight from a JPQL projection so no entity is managed.
+ */
+public final class CarExportRow {
+    private final long id;
+    private final String brand;
+    private final String model;
+    private final int year;
+    private final int price;
+    private final LocalDateTime postTime;
+    private final LocalDateTime modifiedTime;
+
+    public CarExportRow(long id, String brand, String model, int year, int price,
+                        LocalDateTime postTime, LocalDateTime modifiedTime) {
+        this.id = id;
+        this.brand = brand;
+        this.model = model;
+        this.year = year;
+        this.price = price;
+        this.postTime = postTime;
+        this.modifiedTime = modifiedTime;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    public LocalDateTime getPostTime() {
+        return postTime;
+    }
+
+    public LocalDateTime getModifiedTime() {
+        return modifiedTime;
+    }
+}
@@ -0,0 +1,62 @@
+package com.restapi.carMarket.model;
+
+import java.util.Map;
+
+public class CarFacets {
+    private long total;
+    private Map<String, Long> brand;
+    private Map<String, Long> model;
+    private Map<String, Long> year;
+    private Map<String, Long> price;
+
+    public CarFacets(){}
+
+    public CarFacets(long total, Map<String, Long> brand, Map<String, Long> model,
+                     Map<String, Long> year, Map<String, Long> price) {
+        this.total = total;
+        this.brand = brand;
+        this.model = model;
+        this.year = year;
+        this.price = price;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public Map<String, Long> getBrand() {
+        return brand;
+    }
+
+    public void setBrand(Map<String, Long> brand) {
+        this.brand = brand;
+    }
+
+    public Map<String, Long> getModel() {
+        return model;
+    }
+
+    public void setModel(Map<String, Long> model) {
+        this.model = model;
+    }
+
+    public Map<String, Long> getYear() {
+        return year;
+    }
+
+    public void setYear(Map<String, Long> year) {
+        this.year = year;
+    }
+
+    public Map<String, Long> getPrice() {
+        return price;
+    }
+
+    public void setPrice(Map<String, Long> price) {
+        this.price = price;
+    }
+}
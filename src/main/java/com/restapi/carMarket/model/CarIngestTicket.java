@@ -0,0 +1,48 @@
+package com.restapi.carMarket.model;
+
+/**
+ * Where a car accepted by the write-behind ingestion queue stands; {@code id} is set once it is created.
+ */
+public class CarIngestTicket {
+    public enum Status { QUEUED, CREATED, INVALID, FAILED }
+
+    private String ticket;
+    private Status status;
+    private Long id;
+
+    public CarIngestTicket(){}
+
+    public CarIngestTicket(String ticket, Status status, Long id) {
+        this.ticket = ticket;
+        this.status = status;
+        this.id = id;
+    }
+
+    public static CarIngestTicket queued(String ticket) {
+        return new CarIngestTicket(ticket, Status.QUEUED, null);
+    }
+
+    public String getTicket() {
+        return ticket;
+    }
+
+    public void setTicket(String ticket) {
+        this.ticket = ticket;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+}
@@ -0,0 +1,34 @@
+package com.restapi.carMarket.model;
+
+import java.util.List;
+
+/**
+ * One keyset page of a listing; {@code nextCursor} is null on the last page.
+ */
+public class CarPage {
+    private List<CarView> cars;
+    private String nextCursor;
+
+    public CarPage(){}
+
+    public CarPage(List<CarView> cars, String nextCursor) {
+        this.cars = cars;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<CarView> getCars() {
+        return cars;
+    }
+
+    public void setCars(List<CarView> cars) {
+        this.cars = cars;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
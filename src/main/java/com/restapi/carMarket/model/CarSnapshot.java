@@ -0,0 +1,70 @@
+package com.restapi.carMarket.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable copy of the indexed fields of a car, as held by the in-memory catalog.
+ */
+public final class CarSnapshot {
+    private final long id;
+    private final String brand;
+    private final String model;
+    private final int year;
+    private final int price;
+    private final LocalDateTime postTime;
+    private final LocalDateTime modifiedTime;
+    private final long version;
+
+    public CarSnapshot(long id, String brand, String model, int year, int price, LocalDateTime postTime) {
+        this(id, brand, model, year, price, postTime, postTime, 0);
+    }
+
+    public CarSnapshot(long id, String brand, String model, int year, int price, LocalDateTime postTime,
+                       LocalDateTime modifiedTime, long version) {
+        this.id = id;
+        this.brand = brand.intern();
+        this.model = model.intern();
+        this.year = year;
+        this.price = price;
+        this.postTime = postTime;
+        this.modifiedTime = modifiedTime;
+        this.version = version;
+    }
+
+    public static CarSnapshot of(long id, Car car) {
+        return new CarSnapshot(id, car.getBrand(), car.getModel(), car.getYear(), car.getPrice(), car.getPostTime(),
+                car.getModifiedTime(), car.getVersion() == null ? 0 : car.getVersion());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    public LocalDateTime getPostTime() {
+        return postTime;
+    }
+
+    public LocalDateTime getModifiedTime() {
+        return modifiedTime;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,92 @@
+package com.restapi.carMarket.model;
+
+import java.util.Map;
+
+public class CarStats {
+    private String brand;
+    private String model;
+    private Integer year;
+    private long count;
+    private double averagePrice;
+    private int minPrice;
+    private int maxPrice;
+    private Map<String, Integer> percentiles;
+
+    public CarStats(){}
+
+    public CarStats(String brand, String model, Integer year, long count, double averagePrice,
+                    int minPrice, int maxPrice, Map<String, Integer> percentiles) {
+        this.brand = brand;
+        this.model = model;
+        this.year = year;
+        this.count = count;
+        this.averagePrice = averagePrice;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.percentiles = percentiles;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public void setBrand(String brand) {
+        this.brand = brand;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public Integer getYear() {
+        return year;
+    }
+
+    public void setYear(Integer year) {
+        this.year = year;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getAveragePrice() {
+        return averagePrice;
+    }
+
+    public void setAveragePrice(double averagePrice) {
+        this.averagePrice = averagePrice;
+    }
+
+    public int getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(int minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public int getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(int maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public Map<String, Integer> getPercentiles() {
+        return percentiles;
+    }
+
+    public void setPercentiles(Map<String, Integer> percentiles) {
+        this.percentiles = percentiles;
+    }
+}
@@ -0,0 +1,49 @@
+package com.restapi.carMarket.model;
+
+public class CarSuggestion {
+    private String brand;
+    private String model;
+    private long count;
+    private double score;
+
+    public CarSuggestion(){}
+
+    public CarSuggestion(String brand, String model, long count, double score) {
+        this.brand = brand;
+        this.model = model;
+        this.count = count;
+        this.score = score;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public void setBrand(String brand) {
+        this.brand = brand;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+}
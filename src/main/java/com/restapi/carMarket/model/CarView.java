@@ -0,0 +1,78 @@
+package com.restapi.carMarket.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * A car as listing endpoints return it, read through a JPQL constructor projection, so listing
+ * rows are never managed entities and carry no dirty-checking snapshot. It serializes to the
+ * same JSON as {@link Car}.
+ */
+@ToString
+@EqualsAndHashCode
+public final class CarView {
+    private final Long id;
+    private final String brand;
+    private final String model;
+    private final int year;
+    private final int price;
+    private final LocalDateTime postTime;
+    private final LocalDateTime modifiedTime;
+    private final Long version;
+
+    public CarView(Long id, String brand, String model, int year, int price,
+                   LocalDateTime postTime, LocalDateTime modifiedTime, Long version) {
+        this.id = id;
+        this.brand = brand;
+        this.model = model;
+        this.year = year;
+        this.price = price;
+        this.postTime = postTime;
+        this.modifiedTime = modifiedTime;
+        this.version = version;
+    }
+
+    public static CarView of(Car car) {
+        return new CarView(car.getId(), car.getBrand(), car.getModel(), car.getYear(), car.getPrice(),
+                car.getPostTime(), car.getModifiedTime(), car.getVersion());
+    }
+
+    public static CarView of(CarSnapshot car) {
+        return new CarView(car.getId(), car.getBrand(), car.getModel(), car.getYear(), car.getPrice(),
+                car.getPostTime(), car.getModifiedTime(), car.getVersion());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public int getPrice() {
+        return price;
+    }
+
+    public LocalDateTime getPostTime() {
+        return postTime;
+    }
+
+    public LocalDateTime getModifiedTime() {
+        return modifiedTime;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+}
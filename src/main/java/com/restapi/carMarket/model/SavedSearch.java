@@ -0,0 +1,124 @@
+package com.restapi.carMarket.model;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A standing query that is matched against every new or changed listing. Like {@link CarSearch}, a null
+ * field does not restrict the match and both bounds of a range are inclusive.
+ */
+@Entity
+public class SavedSearch {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "saved_search_seq")
+    @SequenceGenerator(name = "saved_search_seq", sequenceName = "saved_search_seq", allocationSize = 50)
+    private Long id;
+    private String brand;
+    private String model;
+    private Integer minYear;
+    private Integer maxYear;
+    private Integer minPrice;
+    private Integer maxPrice;
+    @Column(updatable = false)
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdTime;
+
+    public SavedSearch(){}
+
+    public SavedSearch(String brand, String model, Integer minYear, Integer maxYear, Integer minPrice, Integer maxPrice) {
+        this.brand = brand;
+        this.model = model;
+        this.minYear = minYear;
+        this.maxYear = maxYear;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+    }
+
+    public boolean matches(CarSnapshot car) {
+        return (brand == null || brand.equals(car.getBrand())) && (model == null || model.equals(car.getModel()))
+                && lowestYear() <= car.getYear() && car.getYear() <= highestYear()
+                && lowestPrice() <= car.getPrice() && car.getPrice() <= highestPrice();
+    }
+
+    public int lowestYear() {
+        return minYear == null ? Integer.MIN_VALUE : minYear;
+    }
+
+    public int highestYear() {
+        return maxYear == null ? Integer.MAX_VALUE : maxYear;
+    }
+
+    public int lowestPrice() {
+        return minPrice == null ? Integer.MIN_VALUE : minPrice;
+    }
+
+    public int highestPrice() {
+        return maxPrice == null ? Integer.MAX_VALUE : maxPrice;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public void setBrand(String brand) {
+        this.brand = brand;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public Integer getMinYear() {
+        return minYear;
+    }
+
+    public void setMinYear(Integer minYear) {
+        this.minYear = minYear;
+    }
+
+    public Integer getMaxYear() {
+        return maxYear;
+    }
+
+    public void setMaxYear(Integer maxYear) {
+        this.maxYear = maxYear;
+    }
+
+    public Integer getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Integer minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Integer getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Integer maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public LocalDateTime getCreatedTime() {
+        return createdTime;
+    }
+
+    public void setCreatedTime(LocalDateTime createdTime) {
+        this.createdTime = createdTime;
+    }
+}
@@ -0,0 +1,88 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.dao.CarPartitionDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+/**
+ * Moves listings posted more than {@code carmarket.archive.max-age-days} ago to the archive table, in batches
+ * of {@code carmarket.archive.batch-size} that each commit on their own, and at most
+ * {@code carmarket.archive.max-batches} of them per run, so a backlog is worked off over several runs.
+ * <p>
+ * Where the car table is partitioned by month, every run also creates the partitions of the next
+ * {@code carmarket.archive.partitions-ahead} months and drops the old ones archival has emptied. A month
+ * whose locks are not granted within {@code carmarket.archive.lock-timeout-ms} is left for the next run.
+ * Never lazy, since nothing else asks for it and its schedule only starts once it is created.
+ */
+@Component
+@Lazy(false)
+public class CarArchiver {
+
+    @Autowired
+    CarService carService;
+
+    @Autowired
+    CarPartitionDao carPartitionDao;
+
+    @Value("${carmarket.archive.max-age-days:180}")
+    int maxAgeDays;
+
+    @Value("${carmarket.archive.batch-size:1000}")
+    int batchSize;
+
+    @Value("${carmarket.archive.max-batches:100}")
+    int maxBatches;
+
+    @Value("${carmarket.archive.partitions-ahead:3}")
+    int partitionsAhead;
+
+    @Scheduled(cron = "${carmarket.archive.cron:0 15 * * * *}")
+    public void run() {
+        LocalDateTime before = LocalDateTime.now().minusDays(maxAgeDays);
+        archive(before);
+        if(carPartitionDao.isPartitioned())
+            maintainPartitions(before);
+    }
+
+    /**
+     * Archives the cars posted before {@code before} and returns how many were moved.
+     */
+    public int archive(LocalDateTime before) {
+        int archived = 0;
+        int batches = 0;
+        int moved;
+        do {
+            moved = carService.archivePostedBefore(before, batchSize);
+            archived += moved;
+        } while(moved == batchSize && ++batches < maxBatches);
+        return archived;
+    }
+
+    private void maintainPartitions(LocalDateTime before) {
+        YearMonth current = YearMonth.now();
+        for(int ahead = 0; ahead <= partitionsAhead; ahead++) {
+            try {
+                carPartitionDao.createMonth(current.plusMonths(ahead));
+            } catch (CannotAcquireLockException e) {
+                // the table is busy; the month is created ahead of time, so the next run still makes it
+            }
+        }
+        // a month may only go once all of it is older than the cutoff, and a partial run leaves it holding cars
+        for(YearMonth month : carPartitionDao.findMonths()) {
+            if(month.plusMonths(1).atDay(1).atStartOfDay().isAfter(before))
+                continue;
+            try {
+                carPartitionDao.dropMonthIfEmpty(month);
+            } catch (CannotAcquireLockException e) {
+                // the table is busy; the month stays until a later run gets its locks
+            }
+        }
+    }
+}
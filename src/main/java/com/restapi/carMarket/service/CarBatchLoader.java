@@ -0,0 +1,106 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.config.ReplicaRoutingDataSource;
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.model.Car;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Coalesces concurrent lookups by id, in the manner of a DataLoader. The first caller opens a batch and
+ * waits up to {@code carmarket.find-by-id.batch-window-us} for others to join it; callers for the same id
+ * share one result. The batch is then loaded by the opener in a single {@link CarDao#multiLoad} call, or
+ * as soon as it holds {@code carmarket.find-by-id.batch-size} ids.
+ * <p>
+ * Calls inside a transaction or from a request pinned to the primary are not coalesced, since another
+ * caller's read would not see their writes.
+ */
+@Component
+public class CarBatchLoader {
+
+    @Autowired
+    CarDao carDao;
+
+    @Value("${carmarket.find-by-id.batch-window-us:1000}")
+    long windowMicros;
+
+    @Value("${carmarket.find-by-id.batch-size:100}")
+    int batchSize;
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private Batch open;
+
+    public Optional<Car> load(Long id) {
+        if(windowMicros <= 0 || TransactionSynchronizationManager.isActualTransactionActive()
+                || ReplicaRoutingDataSource.isPrimaryPinned())
+            return Optional.ofNullable(carDao.multiLoad(List.of(id)).get(0));
+
+        Batch batch;
+        CompletableFuture<Car> result;
+        synchronized(lock) {
+            if(open == null)
+                open = new Batch(Thread.currentThread());
+            batch = open;
+            result = batch.results.computeIfAbsent(id, key -> new CompletableFuture<>());
+            if(batch.results.size() >= batchSize) {
+                open = null;
+                LockSupport.unpark(batch.opener);
+            }
+        }
+        if(batch.opener == Thread.currentThread())
+            run(batch);
+
+        try {
+            return Optional.ofNullable(result.join());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    private void run(Batch batch) {
+        long deadline = System.nanoTime() + windowMicros * 1000;
+        long left;
+        while((left = deadline - System.nanoTime()) > 0) {
+            synchronized(lock) {
+                if(open != batch)
+                    break;
+            }
+            LockSupport.parkNanos(this, left);
+        }
+        synchronized(lock) {
+            if(open == batch)
+                open = null;
+        }
+
+        List<Long> ids = new ArrayList<>(batch.results.keySet());
+        try {
+            List<Car> cars = carDao.multiLoad(ids);
+            for(int i = 0; i < ids.size(); i++)
+                batch.results.get(ids.get(i)).complete(cars.get(i));
+        } catch (RuntimeException e) {
+            batch.results.values().forEach(result -> result.completeExceptionally(e));
+        }
+    }
+
+    private static final class Batch {
+        final Thread opener;
+        // only changed under the loader's lock while the batch is open
+        final Map<Long, CompletableFuture<Car>> results = new LinkedHashMap<>();
+
+        Batch(Thread opener) {
+            this.opener = opener;
+        }
+    }
+}
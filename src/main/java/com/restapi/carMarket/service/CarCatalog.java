@@ -0,0 +1,245 @@
+package com.restapi.carMarket.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.restapi.carMarket.dao.CarChangeDao;
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.events.CarPatchedEvent;
+import com.restapi.carMarket.events.CarSavedEvent;
+import com.restapi.carMarket.events.CarsDeletedEvent;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarChange;
+import com.restapi.carMarket.model.CarSnapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+/**
+ * In-memory copy of the car table that the in-process indexes are built from.
+ * It is loaded by a streaming scan at startup and then kept up to date by the
+ * events {@link CarService} publishes after each committed write, and by tailing
+ * the published change feed for the writes other instances make.
+ */
+@Service
+public class CarCatalog {
+
+    @Autowired
+    CarDao carDao;
+
+    @Autowired
+    List<CarCatalogListener> listeners;
+
+    @Autowired
+    CarChangeDao carChangeDao;
+
+    @Autowired
+    CarChangeFeed carChangeFeed;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Value("${carmarket.catalog.sync-batch-size:500}")
+    int syncBatchSize;
+
+    static final long PAGE_TAG_SEED = 17;
+
+    private final Map<Long, CarSnapshot> cars = new ConcurrentHashMap<>();
+    private final NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+    // Cars deleted here whose DELETED change the feed has not shown yet; older changes must not bring them back.
+    final Set<Long> tombstones = ConcurrentHashMap.newKeySet();
+    private volatile boolean loaded;
+    private long lastSeq;
+
+    // Not read-only, so the scan runs on the primary and cannot miss writes a replica has not caught up with.
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void load() {
+        lastSeq = carChangeDao.findLastSeq();
+        try(Stream<Car> rows = carDao.streamAll()) {
+            rows.forEach(car -> {
+                apply(CarSnapshot.of(car.getId(), car));
+                entityManager.detach(car);
+            });
+        }
+        // The scan may have read rows before a concurrent delete committed, so the delete wins.
+        for(Long id : tombstones)
+            remove(id);
+        loaded = true;
+        for(CarCatalogListener listener : listeners)
+            listener.onLoaded();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSaved(CarSavedEvent event) {
+        if(event.getId() != null)
+            apply(CarSnapshot.of(event.getId(), event.getCar()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPatched(CarPatchedEvent event) {
+        apply(CarSnapshot.of(event.getId(), event.getCar()));
+    }
+
+    /**
+     * Tombstones the cars before the delete commits, so the DELETED changes the outbox writes in the same
+     * transaction are only visible to {@link #sync} once the tombstones are there for it to clear.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onDeleting(CarsDeletedEvent event) {
+        tombstones.addAll(event.getIds());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onDeleteRolledBack(CarsDeletedEvent event) {
+        tombstones.removeAll(event.getIds());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeleted(CarsDeletedEvent event) {
+        for(Long id : event.getIds())
+            remove(id);
+    }
+
+    /**
+     * Applies the changes published since the last sync, which include the writes of other instances.
+     * Changes this instance already applied carry no newer version and are skipped; for the others the
+     * cached car is evicted as well, so conditional requests and reads agree with the database.
+     * The changes are handed to the {@link CarChangeFeed} too, which skips those it was already woken for.
+     */
+    @Scheduled(fixedDelayString = "${carmarket.catalog.sync-interval-ms:1000}")
+    public synchronized void sync() {
+        if(!loaded)
+            return;
+        List<CarChange> changes;
+        do {
+            changes = carChangeDao.findBySeqGreaterThanOrderBySeqAsc(lastSeq, PageRequest.of(0, syncBatchSize));
+            for(CarChange change : changes) {
+                if(apply(change))
+                    evict(change.getCarId());
+                lastSeq = change.getSeq();
+            }
+            if(!changes.isEmpty())
+                carChangeFeed.published(changes);
+        } while(changes.size() == syncBatchSize);
+    }
+
+    public CarSnapshot get(long id) {
+        return cars.get(id);
+    }
+
+    public int size() {
+        return cars.size();
+    }
+
+    /**
+     * Hash of the ids and versions of the first {@code size} cars after {@code afterId} in id order,
+     * and of whether more follow, i.e. of everything a keyset page over that range shows.
+     * Returns null until the initial load has finished.
+     */
+    public String pageTag(long afterId, int size) {
+        if(!loaded)
+            return null;
+        long hash = PAGE_TAG_SEED;
+        int count = 0;
+        boolean more = false;
+        for(Long id : ids.tailSet(afterId, false)) {
+            CarSnapshot car = cars.get(id);
+            if(car == null)
+                continue;
+            if(count == size) {
+                more = true;
+                break;
+            }
+            hash = pageTag(hash, id, car.getVersion());
+            count++;
+        }
+        return pageTag(hash, count, more);
+    }
+
+    static long pageTag(long hash, long id, long version) {
+        return 31 * (31 * hash + id) + version;
+    }
+
+    static String pageTag(long hash, int count, boolean more) {
+        return Long.toHexString(more ? 31 * hash + 1 : hash) + "-" + count;
+    }
+
+    /**
+     * Stores {@code snapshot} unless the catalog already holds the same or a later version of that car,
+     * so a scan or event that read the row before a later write cannot roll it back.
+     */
+    private boolean apply(CarSnapshot snapshot) {
+        boolean[] applied = new boolean[1];
+        cars.compute(snapshot.getId(), (id, before) -> {
+            if(tombstones.contains(id) || before != null && before.getVersion() >= snapshot.getVersion())
+                return before;
+            changed(before, snapshot);
+            applied[0] = true;
+            return snapshot;
+        });
+        return applied[0];
+    }
+
+    private boolean apply(CarChange change) {
+        if(change.getType() == CarChange.Type.DELETED) {
+            tombstones.remove(change.getCarId());
+            return remove(change.getCarId());
+        }
+        try {
+            return apply(CarSnapshot.of(change.getCarId(), objectMapper.readValue(change.getData(), Car.class)));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean remove(long id) {
+        boolean[] removed = new boolean[1];
+        cars.computeIfPresent(id, (key, before) -> {
+            changed(before, null);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    private void evict(long id) {
+        Cache cache = cacheManager.getCache("cars");
+        if(cache != null)
+            cache.evict(id);
+    }
+
+    private void changed(CarSnapshot before, CarSnapshot after) {
+        if(after == null)
+            ids.remove(before.getId());
+        else if(before == null)
+            ids.add(after.getId());
+        for(CarCatalogListener listener : listeners)
+            listener.onChange(before, after);
+    }
+}
@@ -0,0 +1,18 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.CarSnapshot;
+
+/**
+ * Receives every change applied to the {@link CarCatalog}. {@code before} is null for a new car
+ * and {@code after} is null for a deleted one. Calls for the same car id never overlap.
+ */
+public interface CarCatalogListener {
+
+    void onChange(CarSnapshot before, CarSnapshot after);
+
+    /**
+     * Called once the startup load has passed every existing car to {@link #onChange}, so later calls are live writes.
+     */
+    default void onLoaded() {
+    }
+}
@@ -0,0 +1,217 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.dao.CarChangeDao;
+import com.restapi.carMarket.model.CarChange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Serves published changes to consumers that tail the feed, either by long polling or over
+ * server-sent events. Waiting consumers are woken after each batch {@link CarChangeRelay} publishes
+ * here and, for the batches other instances publish, once {@link CarCatalog#sync} reads them.
+ * Long polls are answered on one notifier thread. Each stream is written by a sender task of its own
+ * that drains a bounded queue of batches in order, so a stalled client holds up nobody else;
+ * one whose queue is full is disconnected and resumes from its Last-Event-ID.
+ */
+@Service
+public class CarChangeFeed {
+
+    @Autowired
+    CarChangeDao carChangeDao;
+
+    @Value("${carmarket.changes.max-batch-size:500}")
+    int maxBatchSize;
+
+    @Value("${carmarket.changes.max-wait-ms:60000}")
+    long maxWait;
+
+    @Value("${carmarket.changes.stream-timeout-ms:600000}")
+    long streamTimeout;
+
+    @Value("${carmarket.changes.stream-backlog:16}")
+    int streamBacklog;
+
+    private final Queue<Poll> polls = new ConcurrentLinkedQueue<>();
+    private final Queue<Subscriber> subscribers = new ConcurrentLinkedQueue<>();
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "car-change-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService senders = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "car-change-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // last seq consumers were woken for, only touched on the notifier thread
+    private long notifiedSeq;
+
+    public List<CarChange> changes(long after, int limit) {
+        return carChangeDao.findBySeqGreaterThanOrderBySeqAsc(after, PageRequest.of(0, batchSize(limit)));
+    }
+
+    /**
+     * Completes with the changes after {@code after} as soon as there are any, or with an empty list
+     * once {@code wait} milliseconds have passed.
+     */
+    public DeferredResult<List<CarChange>> poll(long after, int limit, long wait) {
+        DeferredResult<List<CarChange>> result = new DeferredResult<>(Math.max(1, Math.min(wait, maxWait)), List.of());
+        Poll poll = new Poll(after, batchSize(limit), result);
+        polls.add(poll);
+        result.onCompletion(() -> polls.remove(poll));
+
+        List<CarChange> changes = changes(after, limit);
+        if(!changes.isEmpty() || wait <= 0)
+            result.setResult(changes);
+        return result;
+    }
+
+    /**
+     * Streams every change after {@code after}, first from the table and then as they are published.
+     * Each event carries its seq as id, so a reconnecting client resumes via Last-Event-ID.
+     */
+    public SseEmitter subscribe(long after) {
+        SseEmitter emitter = new SseEmitter(streamTimeout);
+        Subscriber subscriber = new Subscriber(after, emitter, streamBacklog);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        subscribers.add(subscriber);
+        // an empty batch makes the sender catch up from the table
+        enqueue(subscriber, List.of());
+        return emitter;
+    }
+
+    /**
+     * Wakes the consumers for a batch of published changes. Batches may arrive twice, from the relay
+     * and from the catalog sync; only changes after the last batch consumers were woken for count.
+     */
+    void published(List<CarChange> published) {
+        notifier.execute(() -> {
+            List<CarChange> batch = published.stream().filter(change -> change.getSeq() > notifiedSeq)
+                    .collect(Collectors.toList());
+            if(batch.isEmpty())
+                return;
+            notifiedSeq = batch.get(batch.size() - 1).getSeq();
+            for(Poll poll : polls) {
+                List<CarChange> changes = after(poll.after, batch, poll.limit);
+                if(!changes.isEmpty() && poll.result.setResult(changes))
+                    polls.remove(poll);
+            }
+            for(Subscriber subscriber : subscribers)
+                enqueue(subscriber, batch);
+        });
+    }
+
+    private void enqueue(Subscriber subscriber, List<CarChange> batch) {
+        if(!subscriber.batches.offer(batch)) {
+            drop(subscriber);
+            return;
+        }
+        if(subscriber.draining.compareAndSet(false, true))
+            senders.execute(() -> drain(subscriber));
+    }
+
+    private void drain(Subscriber subscriber) {
+        do {
+            List<CarChange> batch;
+            while((batch = subscriber.batches.poll()) != null)
+                if(!send(subscriber, batch)) {
+                    subscribers.remove(subscriber);
+                    return;
+                }
+            subscriber.draining.set(false);
+            // a batch queued after the last poll but before the flag was cleared has nobody draining it
+        } while(!subscriber.batches.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    /**
+     * Disconnects a subscriber that fell {@code carmarket.changes.stream-backlog} batches behind. Completing
+     * waits for a send in progress, so it runs on a sender thread rather than the notifier.
+     */
+    private void drop(Subscriber subscriber) {
+        if(subscribers.remove(subscriber))
+            senders.execute(subscriber.emitter::complete);
+    }
+
+    /**
+     * Sends the subscriber everything after its last event, taken from the batch if it continues
+     * right where the subscriber is, otherwise read from the table page by page.
+     */
+    private boolean send(Subscriber subscriber, List<CarChange> batch) {
+        try {
+            List<CarChange> changes;
+            while(!(changes = after(subscriber.lastSeq, batch, maxBatchSize)).isEmpty()) {
+                for(CarChange change : changes) {
+                    subscriber.emitter.send(SseEmitter.event().id(change.getSeq().toString()).name("change")
+                            .data(change, MediaType.APPLICATION_JSON));
+                    subscriber.lastSeq = change.getSeq();
+                }
+                if(changes.size() < maxBatchSize)
+                    break;
+            }
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            subscriber.emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private List<CarChange> after(long after, List<CarChange> batch, int limit) {
+        if(batch == null || batch.isEmpty() || after < batch.get(0).getSeq() - 1)
+            return changes(after, limit);
+        return batch.stream().filter(change -> change.getSeq() > after).limit(limit).collect(Collectors.toList());
+    }
+
+    private int batchSize(int limit) {
+        return Math.max(1, Math.min(limit, maxBatchSize));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        notifier.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private static final class Poll {
+        final long after;
+        final int limit;
+        final DeferredResult<List<CarChange>> result;
+
+        Poll(long after, int limit, DeferredResult<List<CarChange>> result) {
+            this.after = after;
+            this.limit = limit;
+            this.result = result;
+        }
+    }
+
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final BlockingQueue<List<CarChange>> batches;
+        final AtomicBoolean draining = new AtomicBoolean();
+        // only touched by the sender task draining the subscriber
+        long lastSeq;
+
+        Subscriber(long lastSeq, SseEmitter emitter, int backlog) {
+            this.lastSeq = lastSeq;
+            this.emitter = emitter;
+            this.batches = new ArrayBlockingQueue<>(backlog);
+        }
+    }
+}
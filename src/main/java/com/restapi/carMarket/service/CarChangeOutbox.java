@@ -0,0 +1,79 @@
+package com.restapi.carMarket.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.restapi.carMarket.dao.CarChangeDao;
+import com.restapi.carMarket.events.CarPatchedEvent;
+import com.restapi.carMarket.events.CarSavedEvent;
+import com.restapi.carMarket.events.CarsDeletedEvent;
+import com.restapi.carMarket.model.CarChange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Transactional outbox of car changes. The events {@link CarService} publishes are appended
+ * synchronously, so a change is stored if and only if the write it describes commits.
+ * Saved and patched changes carry the row as the write left it, version and timestamps included.
+ */
+@Service
+public class CarChangeOutbox {
+
+    @Autowired
+    CarChangeDao carChangeDao;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @EventListener
+    public void onSaved(CarSavedEvent event) {
+        if(event.getId() == null)
+            return;
+        carChangeDao.save(new CarChange(CarChange.Type.SAVED, event.getId(), toJson(event.getCar())));
+    }
+
+    @EventListener
+    public void onPatched(CarPatchedEvent event) {
+        carChangeDao.save(new CarChange(CarChange.Type.PATCHED, event.getId(), toJson(event.getCar())));
+    }
+
+    @EventListener
+    public void onDeleted(CarsDeletedEvent event) {
+        for(Long id : event.getIds())
+            carChangeDao.save(new CarChange(CarChange.Type.DELETED, id, null));
+    }
+
+    /**
+     * Numbers up to {@code limit} unpublished changes after the last published one, in outbox order.
+     * The rows are locked first, so relays on several instances take turns instead of reusing numbers.
+     */
+    @Transactional
+    public List<CarChange> publishPending(int limit) {
+        List<CarChange> pending = carChangeDao.findUnpublished(PageRequest.of(0, limit));
+        if(pending.isEmpty())
+            return pending;
+
+        long seq = carChangeDao.findLastSeq();
+        for(CarChange change : pending)
+            change.setSeq(++seq);
+        return pending;
+    }
+
+    public int purgePublishedBefore(LocalDateTime before) {
+        return carChangeDao.deletePublishedBefore(before);
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
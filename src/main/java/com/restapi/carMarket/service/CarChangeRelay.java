@@ -0,0 +1,48 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.CarChange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Drains the {@link CarChangeOutbox} in batches, each published in its own transaction,
+ * and hands every committed batch to the {@link CarChangeFeed}.
+ * Never lazy, since nothing else asks for it and its schedules only start once it is created.
+ */
+@Component
+@Lazy(false)
+public class CarChangeRelay {
+
+    @Autowired
+    CarChangeOutbox carChangeOutbox;
+
+    @Autowired
+    CarChangeFeed carChangeFeed;
+
+    @Value("${carmarket.changes.relay-batch-size:500}")
+    int batchSize;
+
+    @Value("${carmarket.changes.retention-days:7}")
+    int retentionDays;
+
+    @Scheduled(fixedDelayString = "${carmarket.changes.relay-interval-ms:200}")
+    public void relay() {
+        List<CarChange> batch;
+        do {
+            batch = carChangeOutbox.publishPending(batchSize);
+            if(!batch.isEmpty())
+                carChangeFeed.published(batch);
+        } while(batch.size() == batchSize);
+    }
+
+    @Scheduled(cron = "${carmarket.changes.purge-cron:0 0 * * * *}")
+    public void purge() {
+        carChangeOutbox.purgePublishedBefore(LocalDateTime.now().minusDays(retentionDays));
+    }
+}
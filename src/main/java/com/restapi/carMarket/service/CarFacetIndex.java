@@ -0,0 +1,219 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.CarFacets;
+import com.restapi.carMarket.model.CarSnapshot;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Facet counts for the browse page, maintained from the {@link CarCatalog}. Every car gets a dense ordinal,
+ * reused after it is deleted, and every brand, model, year bucket and price band keeps a Roaring bitmap of
+ * the ordinals of its cars. A count is then the cardinality of an intersection, which Roaring computes
+ * container by container without materializing it.
+ * <p>
+ * Values selected within a facet are OR-ed and facets are AND-ed, and the counts of a facet leave its own
+ * selection out, so they show what picking another value of it would give.
+ */
+@Service
+public class CarFacetIndex implements CarCatalogListener {
+
+    private static final int BRAND = 0, MODEL = 1, YEAR = 2, PRICE = 3;
+
+    @Value("${carmarket.facets.year-bucket:5}")
+    int yearBucket;
+
+    @Value("${carmarket.facets.price-bands:5000,10000,15000,20000,30000,50000,75000,100000}")
+    int[] priceBands;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // all guarded by lock
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final RoaringBitmap live = new RoaringBitmap();
+    private final RoaringBitmap free = new RoaringBitmap();
+    private int nextOrdinal;
+    private final Facet[] facets = {
+            new Facet(Comparator.naturalOrder()), new Facet(Comparator.naturalOrder()),
+            new Facet(Comparator.comparingInt(CarFacetIndex::lowerBound)),
+            new Facet(Comparator.comparingInt(CarFacetIndex::lowerBound))
+    };
+
+    @Override
+    public void onChange(CarSnapshot before, CarSnapshot after) {
+        String[] removed = before == null ? null : labels(before);
+        String[] added = after == null ? null : labels(after);
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = before == null ? null : ordinals.get(before.getId());
+            if(ordinal == null) {
+                if(after == null)
+                    return;
+                removed = null;
+                ordinal = free.isEmpty() ? nextOrdinal++ : free.first();
+                free.remove(ordinal);
+                live.add(ordinal);
+                ordinals.put(after.getId(), ordinal);
+            } else if(after == null) {
+                live.remove(ordinal);
+                free.add(ordinal);
+                ordinals.remove(before.getId());
+            }
+            for(int facet = 0; facet < facets.length; facet++) {
+                if(removed != null && added != null && removed[facet].equals(added[facet]))
+                    continue;
+                if(removed != null)
+                    facets[facet].remove(removed[facet], ordinal);
+                if(added != null)
+                    facets[facet].add(added[facet], ordinal);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The startup load adds cars in id order, so ordinals of neighbouring ids share runs that compress well.
+     */
+    @Override
+    public void onLoaded() {
+        lock.writeLock().lock();
+        try {
+            for(Facet facet : facets)
+                facet.values.values().forEach(bitmap -> {
+                    bitmap.runOptimize();
+                    bitmap.trim();
+                });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Counts of every facet value under the selection, leaving out values without cars. Null or empty
+     * selections do not filter; year and price are selected by the labels this returns.
+     */
+    public CarFacets facets(List<String> brands, List<String> models, List<String> years, List<String> prices) {
+        List<List<String>> selection = Arrays.asList(brands, models, years, prices);
+        lock.readLock().lock();
+        try {
+            RoaringBitmap[] selected = new RoaringBitmap[facets.length];
+            for(int facet = 0; facet < facets.length; facet++)
+                if(selection.get(facet) != null && !selection.get(facet).isEmpty())
+                    selected[facet] = facets[facet].union(selection.get(facet));
+
+            // a facet without a selection of its own is counted within the full intersection
+            RoaringBitmap matching = intersect(selected, -1);
+            List<Map<String, Long>> counts = new ArrayList<>(facets.length);
+            for(int facet = 0; facet < facets.length; facet++)
+                counts.add(facets[facet].counts(selected[facet] == null ? matching : intersect(selected, facet)));
+            long total = (matching == null ? live : matching).getLongCardinality();
+            return new CarFacets(total, counts.get(BRAND), counts.get(MODEL), counts.get(YEAR), counts.get(PRICE));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinals.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    String yearBucket(int year) {
+        int from = Math.floorDiv(year, yearBucket) * yearBucket;
+        return yearBucket == 1 ? Integer.toString(from) : from + "-" + (from + yearBucket - 1);
+    }
+
+    String priceBand(int price) {
+        int band = 0;
+        while(band < priceBands.length && price >= priceBands[band])
+            band++;
+        int from = band == 0 ? 0 : priceBands[band - 1];
+        return band == priceBands.length ? from + "+" : from + "-" + (priceBands[band] - 1);
+    }
+
+    private String[] labels(CarSnapshot car) {
+        return new String[] {car.getBrand(), car.getModel(), yearBucket(car.getYear()), priceBand(car.getPrice())};
+    }
+
+    /**
+     * Intersection of the selections of every facet but {@code skipped}, or null when none of them filters.
+     */
+    private static RoaringBitmap intersect(RoaringBitmap[] selected, int skipped) {
+        RoaringBitmap result = null;
+        for(int facet = 0; facet < selected.length; facet++)
+            if(facet != skipped && selected[facet] != null)
+                result = result == null ? selected[facet] : RoaringBitmap.and(result, selected[facet]);
+        return result;
+    }
+
+    // year buckets and price bands sort by the number they start with, e.g. "5000-9999" before "10000-14999"
+    private static int lowerBound(String label) {
+        int end = 1;
+        while(end < label.length() && Character.isDigit(label.charAt(end)))
+            end++;
+        return Integer.parseInt(label.substring(0, end));
+    }
+
+    private static final class Facet {
+        final NavigableMap<String, RoaringBitmap> values;
+
+        Facet(Comparator<String> order) {
+            this.values = new TreeMap<>(order);
+        }
+
+        void add(String value, int ordinal) {
+            values.computeIfAbsent(value, key -> new RoaringBitmap()).add(ordinal);
+        }
+
+        void remove(String value, int ordinal) {
+            RoaringBitmap bitmap = values.get(value);
+            if(bitmap == null)
+                return;
+            bitmap.remove(ordinal);
+            if(bitmap.isEmpty())
+                values.remove(value);
+        }
+
+        /**
+         * Cars having any of the values. A single value is returned as is, so callers must not modify the result.
+         */
+        RoaringBitmap union(List<String> selected) {
+            List<RoaringBitmap> bitmaps = new ArrayList<>(selected.size());
+            for(String value : selected) {
+                RoaringBitmap bitmap = value == null ? null : values.get(value);
+                if(bitmap != null)
+                    bitmaps.add(bitmap);
+            }
+            if(bitmaps.size() == 1)
+                return bitmaps.get(0);
+            return bitmaps.isEmpty() ? new RoaringBitmap() : FastAggregation.or(bitmaps.iterator());
+        }
+
+        Map<String, Long> counts(RoaringBitmap filter) {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            values.forEach((value, bitmap) -> {
+                long count = filter == null ? bitmap.getLongCardinality() : RoaringBitmap.andCardinality(filter, bitmap);
+                if(count > 0)
+                    counts.put(value, count);
+            });
+            return counts;
+        }
+    }
+}
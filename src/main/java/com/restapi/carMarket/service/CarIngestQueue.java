@@ -0,0 +1,311 @@
+package com.restapi.carMarket.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.restapi.carMarket.exceptions.CarNotValidException;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarBatchResult;
+import com.restapi.carMarket.model.CarIngestTicket;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write-behind ingestion for {@code POST /cars}, enabled with {@code carmarket.ingest.enabled=true}.
+ * A validated car is appended to a local journal, synced to disk, queued and acknowledged with a ticket;
+ * {@link #flush} then creates the queued cars in batches through {@link CarService#insertAll}.
+ * <p>
+ * The journal holds one JSON line per accepted car and one per written batch listing its tickets.
+ * On startup every accepted car without a written line is queued again, so a crash loses nothing
+ * that was acknowledged, but a crash between a commit and its journal line creates those cars twice.
+ * Cars whose write failed only because the database was unavailable are retried by a later flush.
+ * The journal is truncated whenever the queue runs empty.
+ */
+@Service
+@Lazy(false)
+@ConditionalOnProperty(name = "carmarket.ingest.enabled", havingValue = "true")
+public class CarIngestQueue {
+
+    private static final byte[] NEWLINE = {'\n'};
+
+    @Autowired
+    CarService carService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${carmarket.ingest.capacity:10000}")
+    int capacity;
+
+    @Value("${carmarket.ingest.batch-size:500}")
+    int batchSize;
+
+    @Value("${carmarket.ingest.journal:ingest.journal}")
+    String journalPath;
+
+    @Value("${carmarket.ingest.ticket-ttl-minutes:60}")
+    long ticketTtl;
+
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    // accepted cars that are not written yet, queued or in a batch; bounded by capacity
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final Object journalLock = new Object();
+    private final Object syncLock = new Object();
+    private Cache<String, CarIngestTicket> tickets;
+    private FileChannel journal;
+    // bytes ever appended and bytes known to be on disk, both never reset by truncation
+    private long appended;
+    private volatile long synced;
+
+    @PostConstruct
+    public void open() throws IOException {
+        tickets = Caffeine.newBuilder().expireAfterWrite(ticketTtl, TimeUnit.MINUTES).build();
+        Path path = Paths.get(journalPath).toAbsolutePath();
+        Files.createDirectories(path.getParent());
+        Map<String, Car> pending = replay(path);
+
+        Path compacted = path.resolveSibling(path.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(compacted, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for(Map.Entry<String, Car> entry : pending.entrySet())
+                writeLine(channel, accepted(entry.getKey(), entry.getValue()));
+            channel.force(true);
+        }
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        pending.forEach((ticket, car) -> {
+            outstanding.incrementAndGet();
+            tickets.put(ticket, CarIngestTicket.queued(ticket));
+            queue.add(new Entry(ticket, car));
+        });
+    }
+
+    /**
+     * Queues the car once it is in the journal and returns its ticket, or returns null when
+     * {@code carmarket.ingest.capacity} cars are already waiting. Like {@code POST /cars/batch},
+     * every queued car is created as a new one, whatever id it carries.
+     */
+    public CarIngestTicket offer(Car car) {
+        if(!carService.isValid(car))
+            throw new CarNotValidException();
+
+        int queued;
+        do {
+            queued = outstanding.get();
+            if(queued >= capacity)
+                return null;
+        } while(!outstanding.compareAndSet(queued, queued + 1));
+
+        String ticket = UUID.randomUUID().toString();
+        try {
+            append(accepted(ticket, car));
+        } catch (IOException e) {
+            outstanding.decrementAndGet();
+            throw new UncheckedIOException(e);
+        }
+        CarIngestTicket status = CarIngestTicket.queued(ticket);
+        tickets.put(ticket, status);
+        queue.add(new Entry(ticket, car));
+        return status;
+    }
+
+    public CarIngestTicket status(String ticket) {
+        return tickets.getIfPresent(ticket);
+    }
+
+    public int size() {
+        return outstanding.get();
+    }
+
+    @Scheduled(fixedDelayString = "${carmarket.ingest.flush-interval-ms:50}")
+    public synchronized void flush() throws IOException {
+        List<Entry> batch = new ArrayList<>(batchSize);
+        Entry entry;
+        boolean written = true;
+        do {
+            batch.clear();
+            while(batch.size() < batchSize && (entry = queue.poll()) != null)
+                batch.add(entry);
+            if(!batch.isEmpty())
+                written = write(batch);
+        } while(batch.size() == batchSize && written);
+
+        synchronized(journalLock) {
+            if(outstanding.get() == 0 && journal.size() > 0)
+                journal.truncate(0);
+        }
+    }
+
+    /**
+     * Writes the batch and returns whether every car in it got its final status. Cars that failed for a
+     * reason that may pass, such as the database being unreachable, are queued again and stay in the journal.
+     */
+    private boolean write(List<Entry> batch) throws IOException {
+        List<CarIngestTicket> results = new ArrayList<>(batch.size());
+        List<Entry> retry = new ArrayList<>();
+        try {
+            List<Car> cars = new ArrayList<>(batch.size());
+            for(Entry entry : batch) {
+                entry.car.setVersion(null);
+                cars.add(entry.car);
+            }
+            List<CarBatchResult> created = carService.insertAll(cars);
+            for(int i = 0; i < batch.size(); i++)
+                results.add(ticket(batch.get(i).ticket, created.get(i)));
+        } catch (RuntimeException e) {
+            results.clear();
+            if(isTransient(e))
+                retry.addAll(batch);
+            else
+                // a single failing row rolls back the whole batch, so the cars are retried one by one
+                for(Entry entry : batch) {
+                    try {
+                        // the rolled back save left a version behind, which would turn the next save into a merge
+                        entry.car.setVersion(null);
+                        results.add(ticket(entry.ticket, carService.insertAll(List.of(entry.car)).get(0)));
+                    } catch (RuntimeException carFailure) {
+                        if(isTransient(carFailure))
+                            retry.add(entry);
+                        else
+                            results.add(new CarIngestTicket(entry.ticket, CarIngestTicket.Status.FAILED, null));
+                    }
+                }
+        }
+
+        for(CarIngestTicket result : results)
+            tickets.put(result.getTicket(), result);
+        if(!results.isEmpty()) {
+            ObjectNode written = objectMapper.createObjectNode();
+            results.forEach(result -> written.withArray("written").add(result.getTicket()));
+            outstanding.addAndGet(-results.size());
+            append(objectMapper.writeValueAsBytes(written));
+        }
+        queue.addAll(retry);
+        return retry.isEmpty();
+    }
+
+    private static boolean isTransient(Throwable failure) {
+        for(Throwable cause = failure; cause != null; cause = cause.getCause())
+            if(cause instanceof TransientDataAccessException || cause instanceof CannotCreateTransactionException)
+                return true;
+        return false;
+    }
+
+    private static CarIngestTicket ticket(String ticket, CarBatchResult result) {
+        return result.getStatus() == CarBatchResult.Status.CREATED
+                ? new CarIngestTicket(ticket, CarIngestTicket.Status.CREATED, result.getId())
+                : new CarIngestTicket(ticket, CarIngestTicket.Status.INVALID, null);
+    }
+
+    /**
+     * Appends the record and returns once it is on disk. Appends that arrive while another thread
+     * syncs wait for it and are then synced together, so concurrent writers share one fsync.
+     */
+    private void append(byte[] record) throws IOException {
+        long end;
+        synchronized(journalLock) {
+            writeLine(journal, record);
+            end = appended += record.length + NEWLINE.length;
+        }
+        if(synced >= end)
+            return;
+        synchronized(syncLock) {
+            if(synced >= end)
+                return;
+            long upTo;
+            synchronized(journalLock) {
+                upTo = appended;
+            }
+            journal.force(false);
+            synced = upTo;
+        }
+    }
+
+    private static void writeLine(FileChannel channel, byte[] record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(record.length + NEWLINE.length).put(record).put(NEWLINE).flip();
+        while(buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private byte[] accepted(String ticket, Car car) throws JsonProcessingException {
+        ObjectNode record = objectMapper.createObjectNode();
+        record.put("ticket", ticket);
+        record.set("car", objectMapper.valueToTree(car));
+        return objectMapper.writeValueAsBytes(record);
+    }
+
+    private Map<String, Car> replay(Path path) throws IOException {
+        Map<String, Car> pending = new LinkedHashMap<>();
+        if(!Files.exists(path))
+            return pending;
+        try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                JsonNode record;
+                try {
+                    record = objectMapper.readTree(line);
+                } catch (JsonProcessingException e) {
+                    // the last line may be cut short by a crash while it was appended
+                    continue;
+                }
+                if(record.has("car"))
+                    pending.put(record.get("ticket").asText(), objectMapper.treeToValue(record.get("car"), Car.class));
+                else if(record.has("written"))
+                    record.get("written").forEach(ticket -> pending.remove(ticket.asText()));
+            }
+        }
+        return pending;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            journal.close();
+        }
+    }
+
+    private static final class Entry {
+        final String ticket;
+        final Car car;
+
+        Entry(String ticket, Car car) {
+            this.ticket = ticket;
+            this.car = car;
+        }
+    }
+}
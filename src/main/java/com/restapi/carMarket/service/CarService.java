@@ -1,55 +1,337 @@
 package com.restapi.carMarket.service;
 
+import com.restapi.carMarket.config.ReplicaRoutingDataSource;
+import com.restapi.carMarket.dao.ArchivedCarDao;
 import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.events.CarPatchedEvent;
+import com.restapi.carMarket.events.CarSavedEvent;
+import com.restapi.carMarket.events.CarsDeletedEvent;
+import com.restapi.carMarket.exceptions.CarIdsNotValidException;
 import com.restapi.carMarket.exceptions.CarNotFoundException;
+import com.restapi.carMarket.exceptions.CarNotUniqueException;
 import com.restapi.carMarket.exceptions.CarNotValidException;
+import com.restapi.carMarket.exceptions.CarSearchNotValidException;
+import com.restapi.carMarket.exceptions.CarVersionConflictException;
+import com.restapi.carMarket.exceptions.CursorNotValidException;
+import com.restapi.carMarket.model.ArchivedCar;
 import com.restapi.carMarket.model.Car;
-import org.springframework.beans.BeanUtils;
+import com.restapi.carMarket.model.CarBatchResult;
+import com.restapi.carMarket.model.CarExportRow;
+import com.restapi.carMarket.model.CarPage;
+import com.restapi.carMarket.model.CarPatch;
+import com.restapi.carMarket.model.CarSearch;
+import com.restapi.carMarket.model.CarSnapshot;
+import com.restapi.carMarket.model.CarView;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Example;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.validation.Validator;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 @Service
 public class CarService {
 
+    private static final Set<String> SORT_KEYS = Set.of("id", "year", "price");
+    private static final Set<String> ORDERS = Set.of("asc", "desc");
+
     @Autowired
     CarDao carDao;
 
+    @Autowired
+    ArchivedCarDao archivedCarDao;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    Validator validator;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    CarCatalog carCatalog;
+
+    @Autowired
+    CarTextIndex carTextIndex;
+
+    @Autowired
+    CarBatchLoader carBatchLoader;
+
+    @Autowired
+    CarSimilarIndex carSimilarIndex;
+
+    @Value("${carmarket.page.default-size:50}")
+    int defaultPageSize;
+
+    @Value("${carmarket.page.max-size:500}")
+    int maxPageSize;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    int batchSize;
+
+    @Transactional
+    @CacheEvict(cacheNames = "cars", key = "#car.id", condition = "#car.id != null")
     public void insert(Car car) {
-        if(isValid(car))
-            carDao.save(car);
-        else
+        if(isValid(car)) {
+            Car saved = carDao.save(car);
+            eventPublisher.publishEvent(new CarSavedEvent(saved.getId(), saved));
+        } else
             throw new CarNotValidException();
     }
 
-    private boolean isValid(Car car) {
+    /**
+     * Saves every valid car as a new row in one transaction and reports the outcome of each row.
+     * The persistence context is flushed and cleared once per JDBC batch so it stays bounded.
+     */
+    @Transactional
+    public List<CarBatchResult> insertAll(List<Car> cars) {
+        List<CarBatchResult> results = new ArrayList<>(cars.size());
+        int pending = 0;
+
+        for(int i = 0; i < cars.size(); i++) {
+            Car car = cars.get(i);
+            if(car == null || !validator.validate(car).isEmpty() || !isValid(car)) {
+                results.add(CarBatchResult.invalid(i));
+                continue;
+            }
+            car.setId(null);
+            Car saved = carDao.save(car);
+            eventPublisher.publishEvent(new CarSavedEvent(saved.getId(), saved));
+            results.add(CarBatchResult.created(i, saved));
+
+            if(++pending % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        return results;
+    }
+
+    boolean isValid(Car car) {
+        boolean valid = true;
+        if(isInvalidPrice(car.getPrice()))
+            valid = false;
+        else if(isInvalidYear(car.getYear()))
+            valid = false;
+        return valid;
+    }
+
+    private boolean isValid(CarPatch patch) {
         boolean valid = true;
-        if(isValidPrice(car))
+        if(patch.getBrand() != null && patch.getBrand().trim().isEmpty())
             valid = false;
-        else if(isValidYear(car))
+        else if(patch.getModel() != null && patch.getModel().trim().isEmpty())
+            valid = false;
+        else if(patch.getPrice() != null && isInvalidPrice(patch.getPrice()))
+            valid = false;
+        else if(patch.getYear() != null && isInvalidYear(patch.getYear()))
             valid = false;
         return valid;
     }
 
-    private boolean isValidYear(Car car) {
-        return car.getYear()<1885 || car.getYear()> LocalDateTime.now().getYear();
+    private boolean isInvalidYear(int year) {
+        return year<1885 || year> LocalDateTime.now().getYear();
     }
 
-    private boolean isValidPrice(Car car) {
-        return car.getPrice()<1 || car.getPrice()>2000000000;
+    private boolean isInvalidPrice(int price) {
+        return price<1 || price>2000000000;
     }
 
+    @Transactional(readOnly = true)
     public List<Car> findAll() {
         return carDao.findAll();
     }
 
+    @Transactional(readOnly = true)
+    public CarPage findPage(String cursor, Integer size) {
+        int pageSize = pageSize(size);
+        long[] after = decodeCursor(cursor, 1);
+        List<CarView> cars = carDao.findViewsByIdGreaterThan(after == null ? 0L : after[0], PageRequest.of(0, pageSize + 1));
+
+        if(cars.size() > pageSize) {
+            cars = cars.subList(0, pageSize);
+            return new CarPage(cars, encodeCursor(cars.get(pageSize - 1).getId()));
+        }
+        return new CarPage(cars, null);
+    }
+
+    /**
+     * A keyset page of the archived cars, in the same shape as {@link #findPage}.
+     */
+    @Transactional(readOnly = true)
+    public CarPage findArchivePage(String cursor, Integer size) {
+        int pageSize = pageSize(size);
+        long[] after = decodeCursor(cursor, 1);
+        List<CarView> cars = archivedCarDao.findViewsByIdGreaterThan(after == null ? 0L : after[0], PageRequest.of(0, pageSize + 1));
+
+        if(cars.size() > pageSize) {
+            cars = cars.subList(0, pageSize);
+            return new CarPage(cars, encodeCursor(cars.get(pageSize - 1).getId()));
+        }
+        return new CarPage(cars, null);
+    }
+
+    @Transactional(readOnly = true)
+    public ArchivedCar findArchivedById(Long id) {
+        return archivedCarDao.findById(id).orElseThrow(CarNotFoundException::new);
+    }
+
+    @Transactional(readOnly = true)
+    public CarPage search(CarSearch search, String cursor, Integer size) {
+        if(!SORT_KEYS.contains(search.getSort()) || !ORDERS.contains(search.getOrder()))
+            throw new CarSearchNotValidException();
+
+        boolean byId = "id".equals(search.getSort());
+        int pageSize = pageSize(size);
+        long[] after = decodeCursor(cursor, byId ? 1 : 2);
+        // year and price cursors lead with an int, so a larger key comes from a tampered or foreign cursor
+        if(after != null && !byId && after[0] != (int) after[0])
+            throw new CursorNotValidException();
+        List<CarView> cars = after == null ? carDao.search(search, null, null, pageSize + 1)
+                : byId ? carDao.search(search, null, after[0], pageSize + 1)
+                : carDao.search(search, (int) after[0], after[1], pageSize + 1);
+
+        if(cars.size() > pageSize) {
+            cars = cars.subList(0, pageSize);
+            CarView last = cars.get(pageSize - 1);
+            return new CarPage(cars, byId ? encodeCursor(last.getId())
+                    : encodeCursor("year".equals(search.getSort()) ? last.getYear() : last.getPrice(), last.getId()));
+        }
+        return new CarPage(cars, null);
+    }
+
+    /**
+     * Cars whose brand and model best match the free text query, ranked by {@link CarTextIndex};
+     * only the cars of the resulting page are loaded, by primary key.
+     */
+    @Transactional(readOnly = true)
+    public List<CarView> fulltext(String query, Integer size) {
+        List<Long> ids = carTextIndex.search(query, pageSize(size));
+        if(ids.isEmpty())
+            return new ArrayList<>();
+
+        Map<Long, CarView> cars = carDao.findViewsByIdIn(ids).stream()
+                .collect(Collectors.toMap(CarView::getId, Function.identity()));
+        return ids.stream().map(cars::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * The cars closest in year and price to the car, ranked by {@link CarSimilarIndex} and taken
+     * from the catalog, so the database is not queried.
+     */
+    public List<CarView> similar(Long id, Integer k, boolean recent) {
+        CarSnapshot car = carCatalog.get(id);
+        if(car == null)
+            throw new CarNotFoundException();
+        return carSimilarIndex.similar(car, pageSize(k), recent).stream().map(CarView::of).collect(Collectors.toList());
+    }
+
+    /**
+     * Fingerprint of the ids and versions of the rows {@link #findPage} returns for the same arguments,
+     * taken from the catalog without touching the database, or null while the catalog is not loaded.
+     */
+    public String findPageTag(String cursor, Integer size) {
+        long[] after = decodeCursor(cursor, 1);
+        return carCatalog.pageTag(after == null ? 0L : after[0], pageSize(size));
+    }
+
+    /**
+     * The fingerprint {@link #findPageTag} gives while the catalog holds exactly the rows of {@code page}.
+     */
+    public String pageTag(CarPage page) {
+        long hash = CarCatalog.PAGE_TAG_SEED;
+        for(CarView car : page.getCars())
+            hash = CarCatalog.pageTag(hash, car.getId(), car.getVersion() == null ? 0 : car.getVersion());
+        return CarCatalog.pageTag(hash, page.getCars().size(), page.getNextCursor() != null);
+    }
+
+    /**
+     * Walks the whole table through a database cursor, handing each row to the consumer
+     * and detaching it right away so the persistence context never grows with the table.
+     */
+    @Transactional(readOnly = true)
+    public void streamAll(Consumer<Car> consumer) {
+        try(Stream<Car> cars = carDao.streamAll()) {
+            cars.forEach(car -> {
+                consumer.accept(car);
+                entityManager.detach(car);
+            });
+        }
+    }
+
+    /**
+     * Hands every car, or only those modified at or after {@code since}, to the consumer as a flat row
+     * read through a database cursor, so memory stays flat however large the table is.
+     */
+    @Transactional(readOnly = true)
+    public void export(LocalDateTime since, Consumer<CarExportRow> consumer) {
+        try(Stream<CarExportRow> rows = since == null ? carDao.streamExport() : carDao.streamExportModifiedSince(since)) {
+            rows.forEach(consumer);
+        }
+    }
+
+    private int pageSize(Integer size) {
+        return size == null ? defaultPageSize : Math.max(1, Math.min(size, maxPageSize));
+    }
+
+    private String encodeCursor(long... keys) {
+        String cursor = Arrays.stream(keys).mapToObj(Long::toString).collect(Collectors.joining(":"));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private long[] decodeCursor(String cursor, int length) {
+        if(cursor == null || cursor.isEmpty())
+            return null;
+        try {
+            long[] keys = Arrays.stream(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":"))
+                    .mapToLong(Long::parseLong).toArray();
+            if(keys.length != length)
+                throw new CursorNotValidException();
+            return keys;
+        } catch (IllegalArgumentException e) {
+            throw new CursorNotValidException();
+        }
+    }
+
+    /**
+     * Concurrent misses of the cache are merged into batched lookups by the {@link CarBatchLoader}.
+     * They read from the primary, so the cache is never filled with a replica's stale copy.
+     */
+    @Cacheable(cacheNames = "cars", sync = true)
     public Car findById(Long id) {
-        Optional<Car> car = carDao.findById(id);
+        Optional<Car> car = ReplicaRoutingDataSource.readFromPrimary(() -> carBatchLoader.load(id));
 
         if(car.isPresent())
             return car.get();
@@ -57,31 +339,148 @@ public class CarService {
             throw new CarNotFoundException();
     }
 
+    /**
+     * The existing cars among {@code ids}, each once and in the order first asked for, read in one query.
+     */
+    @Transactional(readOnly = true)
+    public List<Car> findAllById(List<Long> ids) {
+        List<Long> distinct = ids.stream().filter(Objects::nonNull).distinct().collect(Collectors.toList());
+        if(distinct.isEmpty() || distinct.size() > maxPageSize)
+            throw new CarIdsNotValidException();
+        return carDao.multiLoad(distinct).stream().filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    /**
+     * The car as the catalog last saw it, so conditional requests can be answered without loading it,
+     * or null when the catalog does not know it.
+     */
+    public CarSnapshot findSnapshot(Long id) {
+        return carCatalog.get(id);
+    }
+
+    /**
+     * Deletes the car with the id and attributes of {@code car}. Without an id, the one car with exactly its
+     * attributes, and its post time to the second if given, is deleted; when several match, none is.
+     */
+    @Transactional
     public void delete(Car car) {
-        if(carDao.exists(Example.of(car)))
-            carDao.delete(car);
-        else
+        Long id = car.getId() != null ? car.getId() : findOnlyMatch(car);
+        if(carDao.deleteCarMatching(id, car) == 0)
             throw new CarNotFoundException();
+        evictAfterCommit(List.of(id));
+        eventPublisher.publishEvent(CarsDeletedEvent.ofIds(List.of(id)));
+    }
 
+    private Long findOnlyMatch(Car car) {
+        PageRequest two = PageRequest.of(0, 2);
+        LocalDateTime postTime = car.getPostTime() == null ? null : car.getPostTime().truncatedTo(ChronoUnit.SECONDS);
+        List<Long> ids = postTime == null ? carDao.findIdsMatching(car, two)
+                : carDao.findIdsMatchingPostedBetween(car, postTime, postTime.plusSeconds(1), two);
+        if(ids.isEmpty())
+            throw new CarNotFoundException();
+        if(ids.size() > 1)
+            throw new CarNotUniqueException();
+        return ids.get(0);
     }
 
+    @Transactional
+    @CacheEvict(cacheNames = "cars", key = "#id")
     public void deleteById(Long id) {
-        if(carDao.existsById(id))
-            carDao.deleteById(id);
-        else
+        if(carDao.deleteCarById(id) == 0)
+            throw new CarNotFoundException();
+        eventPublisher.publishEvent(CarsDeletedEvent.ofIds(List.of(id)));
+    }
+
+    @Transactional
+    public int deleteAllById(List<Long> ids) {
+        if(ids.isEmpty())
+            throw new CarNotFoundException();
+
+        int deleted = carDao.deleteCarsByIdIn(ids);
+        if(deleted == 0)
             throw new CarNotFoundException();
+        evictAfterCommit(ids);
+        eventPublisher.publishEvent(CarsDeletedEvent.ofIds(ids));
+        return deleted;
+    }
+
+    /**
+     * Evicts the cars once the transaction has committed, like {@link CacheEvict} on the other write paths,
+     * so a concurrent {@link #findById} cannot put a deleted row back into the cache.
+     */
+    private void evictAfterCommit(Collection<Long> ids) {
+        Cache cache = cacheManager.getCache("cars");
+        if(cache == null)
+            return;
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            ids.forEach(cache::evict);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCommit() {
+                ids.forEach(cache::evict);
+            }
+        });
     }
 
+    /**
+     * Moves up to {@code limit} of the cars posted before {@code before} to the archive, oldest first, and returns
+     * how many were moved. To the catalog, the change feed and the caches they are deleted.
+     */
+    @Transactional
+    public int archivePostedBefore(LocalDateTime before, int limit) {
+        List<Long> ids = carDao.findIdsPostedBefore(before, PageRequest.of(0, limit));
+        if(ids.isEmpty())
+            return 0;
+
+        archivedCarDao.copyCars(ids, LocalDateTime.now());
+        int archived = carDao.deleteCarsByIdIn(ids);
+        evictAfterCommit(ids);
+        eventPublisher.publishEvent(CarsDeletedEvent.ofIds(ids));
+        return archived;
+    }
+
+    /**
+     * Replaces the car if it is still at {@code car.getVersion()}, or whatever its version when that is null,
+     * which {@link com.restapi.carMarket.api.CarController} only allows for {@code If-Match: *}.
+     */
+    @Transactional
+    @CacheEvict(cacheNames = "cars", key = "#id")
     public void update(Long id, Car car) {
         if(isValid(car)){
-            Optional<Car> oldCar = carDao.findById(id);
+            car.setModifiedTime(LocalDateTime.now());
+            int updated = car.getVersion() == null ? carDao.updateCar(id, car) : carDao.updateCarWithVersion(id, car);
 
-            if(oldCar.isPresent())
-                BeanUtils.copyProperties(oldCar.get(), car, "id");
-            else
-               throw new CarNotFoundException();
+            if(updated == 0)
+                throw notUpdated(id);
+            eventPublisher.publishEvent(new CarSavedEvent(id, reload(id)));
         }else
             throw new CarNotValidException();
 
     }
+
+    @Transactional
+    @CacheEvict(cacheNames = "cars", key = "#id")
+    public void patch(Long id, CarPatch patch) {
+        if(isValid(patch)){
+            LocalDateTime modifiedTime = LocalDateTime.now();
+            if(carDao.patch(id, patch, modifiedTime) == 0)
+                throw notUpdated(id);
+            eventPublisher.publishEvent(new CarPatchedEvent(id, patch, reload(id)));
+        }else
+            throw new CarNotValidException();
+    }
+
+    /**
+     * The row as the UPDATE left it, with the version, post time and modification time the listeners
+     * of the write events need, which the request does not carry. The UPDATE has locked it, so it is there.
+     */
+    private Car reload(Long id) {
+        return carDao.findById(id).orElseThrow(CarNotFoundException::new);
+    }
+
+    private RuntimeException notUpdated(Long id) {
+        return carDao.existsById(id) ? new CarVersionConflictException() : new CarNotFoundException();
+    }
 }
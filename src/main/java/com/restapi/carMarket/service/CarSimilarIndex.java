@@ -0,0 +1,233 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.CarSnapshot;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Nearest neighbours in year and price, maintained from the {@link CarCatalog}. Cars are gridded by brand,
+ * model, year and posting period, and each such row is sorted by price. A search walks the rows of the model
+ * outwards from the car's price, always advancing the walk whose next car is closest, and only opens a row
+ * once nothing outside it can be closer, so it stops after looking at little more than the cars it returns.
+ * When the model has fewer, the other models of the brand fill up.
+ * <p>
+ * Distance is the number of years apart plus the price difference in steps of {@code carmarket.similar.price-step}.
+ * With recency weighting every {@code carmarket.similar.age-step-days} days since posting add one more;
+ * posting periods are that long, so a row's period bounds the age of all its cars.
+ */
+@Service
+public class CarSimilarIndex implements CarCatalogListener {
+
+    private static final Comparator<CarSnapshot> BY_PRICE = Comparator.comparingInt(CarSnapshot::getPrice)
+            .thenComparingLong(CarSnapshot::getId);
+
+    @Value("${carmarket.similar.price-step:2000}")
+    int priceStep;
+
+    @Value("${carmarket.similar.age-step-days:30}")
+    int ageStepDays;
+
+    // brand -> model -> row -> cars by price; all writes for a brand run inside its compute
+    private final Map<String, Map<String, Map<Row, NavigableSet<CarSnapshot>>>> brands = new ConcurrentHashMap<>();
+
+    @Override
+    public void onChange(CarSnapshot before, CarSnapshot after) {
+        if(before != null)
+            brands.computeIfPresent(before.getBrand(), (brand, models) -> {
+                models.computeIfPresent(before.getModel(), (model, rows) -> {
+                    rows.computeIfPresent(row(before), (row, cars) -> {
+                        cars.remove(before);
+                        return cars.isEmpty() ? null : cars;
+                    });
+                    return rows.isEmpty() ? null : rows;
+                });
+                return models.isEmpty() ? null : models;
+            });
+        if(after != null)
+            brands.compute(after.getBrand(), (brand, models) -> {
+                if(models == null)
+                    models = new ConcurrentHashMap<>();
+                models.computeIfAbsent(after.getModel(), model -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(row(after), row -> new ConcurrentSkipListSet<>(BY_PRICE))
+                        .add(after);
+                return models;
+            });
+    }
+
+    /**
+     * Up to {@code k} cars closest to {@code car}, closest first: those of its model, then those of
+     * other models of its brand. The car itself is left out.
+     */
+    public List<CarSnapshot> similar(CarSnapshot car, int k, boolean recent) {
+        List<CarSnapshot> result = new ArrayList<>(k);
+        Map<String, Map<Row, NavigableSet<CarSnapshot>>> models = brands.get(car.getBrand());
+        if(models == null || k <= 0)
+            return result;
+        double now = steps(LocalDateTime.now());
+        Map<Row, NavigableSet<CarSnapshot>> sameModel = models.get(car.getModel());
+        if(sameModel != null)
+            result.addAll(nearest(List.of(sameModel), car, k, recent, now));
+        if(result.size() < k) {
+            List<Map<Row, NavigableSet<CarSnapshot>>> related = new ArrayList<>(models.size());
+            models.forEach((model, rows) -> {
+                if(!model.equals(car.getModel()))
+                    related.add(rows);
+            });
+            result.addAll(nearest(related, car, k - result.size(), recent, now));
+        }
+        return result;
+    }
+
+    private List<CarSnapshot> nearest(List<Map<Row, NavigableSet<CarSnapshot>>> grids, CarSnapshot car,
+                                      int k, boolean recent, double now) {
+        // A walk is keyed by a lower bound of the distance of every car it has left: for an unopened row the
+        // years apart plus, with recency, the least age of its period, and once the row is walked from the
+        // car's price, that plus the price difference of the next car
+        PriorityQueue<Walk> walks = new PriorityQueue<>(Comparator.comparingDouble(walk -> walk.bound));
+        for(Map<Row, NavigableSet<CarSnapshot>> rows : grids)
+            rows.forEach((row, cars) -> walks.add(new Walk(row, cars,
+                    Math.abs(row.year - car.getYear()) + (recent ? row.youngest(now) : 0))));
+        CarSnapshot probe = new CarSnapshot(Long.MIN_VALUE, car.getBrand(), car.getModel(), car.getYear(),
+                car.getPrice(), null);
+
+        // max-heap of the best k so far, so its head is the one to drop
+        PriorityQueue<Scored> best = new PriorityQueue<>(Comparator.comparingDouble((Scored scored) -> scored.distance).reversed());
+        // a car repriced during the search may be met twice
+        Set<Long> seen = new HashSet<>();
+        while(!walks.isEmpty()) {
+            Walk walk = walks.poll();
+            if(best.size() == k && walk.bound >= best.peek().distance)
+                break;
+            if(walk.cars == null) {
+                double floor = walk.bound;
+                offer(walks, new Walk(walk.row, floor, walk.rowCars.tailSet(probe, true).iterator()), car);
+                offer(walks, new Walk(walk.row, floor, walk.rowCars.headSet(probe, false).descendingIterator()), car);
+                continue;
+            }
+            CarSnapshot next = walk.next;
+            if(next.getId() != car.getId() && seen.add(next.getId())) {
+                double distance = walk.bound - walk.floor + Math.abs(walk.row.year - car.getYear())
+                        + (recent ? age(next, now) : 0);
+                if(best.size() < k)
+                    best.add(new Scored(next, distance));
+                else if(distance < best.peek().distance) {
+                    best.poll();
+                    best.add(new Scored(next, distance));
+                }
+            }
+            offer(walks, walk, car);
+        }
+
+        List<Scored> sorted = new ArrayList<>(best);
+        sorted.sort(Comparator.comparingDouble((Scored scored) -> scored.distance)
+                .thenComparingLong(scored -> scored.car.getId()));
+        List<CarSnapshot> result = new ArrayList<>(sorted.size());
+        sorted.forEach(scored -> result.add(scored.car));
+        return result;
+    }
+
+    private void offer(PriorityQueue<Walk> walks, Walk walk, CarSnapshot car) {
+        if(!walk.cars.hasNext())
+            return;
+        walk.next = walk.cars.next();
+        walk.bound = walk.floor + Math.abs((double) walk.next.getPrice() - car.getPrice()) / priceStep;
+        walks.add(walk);
+    }
+
+    private Row row(CarSnapshot car) {
+        return new Row(car.getYear(), car.getPostTime() == null ? Long.MAX_VALUE : (long) Math.floor(steps(car.getPostTime())));
+    }
+
+    private double age(CarSnapshot car, double now) {
+        return car.getPostTime() == null ? 0 : Math.max(0, now - steps(car.getPostTime()));
+    }
+
+    // local time like the post times themselves, counted in age steps
+    private double steps(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / (ageStepDays * 86400.0);
+    }
+
+    /**
+     * The cars of a model from one year, posted within one age step, or without a post time.
+     */
+    private static final class Row {
+        final int year;
+        final long period;
+
+        Row(int year, long period) {
+            this.year = year;
+            this.period = period;
+        }
+
+        double youngest(double now) {
+            return period == Long.MAX_VALUE ? 0 : Math.max(0, now - (period + 1));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o)
+                return true;
+            if(!(o instanceof Row))
+                return false;
+            Row row = (Row) o;
+            return year == row.year && period == row.period;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * year + Long.hashCode(period);
+        }
+    }
+
+    /**
+     * A row not opened yet, or one direction of walking it from the car's price.
+     */
+    private static final class Walk {
+        final Row row;
+        final NavigableSet<CarSnapshot> rowCars;
+        // the bound of the row, to which a walk adds the price difference of its next car
+        final double floor;
+        final Iterator<CarSnapshot> cars;
+        CarSnapshot next;
+        double bound;
+
+        Walk(Row row, NavigableSet<CarSnapshot> rowCars, double bound) {
+            this.row = row;
+            this.rowCars = rowCars;
+            this.floor = bound;
+            this.cars = null;
+            this.bound = bound;
+        }
+
+        Walk(Row row, double floor, Iterator<CarSnapshot> cars) {
+            this.row = row;
+            this.rowCars = null;
+            this.floor = floor;
+            this.cars = cars;
+        }
+    }
+
+    private static final class Scored {
+        final CarSnapshot car;
+        final double distance;
+
+        Scored(CarSnapshot car, double distance) {
+            this.car = car;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.exceptions.CarSearchNotValidException;
+import com.restapi.carMarket.model.CarSnapshot;
+import com.restapi.carMarket.model.CarStats;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Price distribution per brand, model and year, maintained from the {@link CarCatalog}
+ * so statistics are served without touching the database.
+ */
+@Service
+public class CarStatsIndex implements CarCatalogListener {
+
+    private static final Comparator<Key> KEY_ORDER = Comparator.comparing((Key key) -> key.brand)
+            .thenComparing(key -> key.model).thenComparingInt(key -> key.year);
+
+    private final Map<Key, PriceDistribution> distributions = new ConcurrentHashMap<>();
+
+    @Override
+    public void onChange(CarSnapshot before, CarSnapshot after) {
+        if(before != null)
+            distributions.computeIfPresent(new Key(before), (key, distribution) -> {
+                distribution.remove(before.getPrice());
+                return distribution.isEmpty() ? null : distribution;
+            });
+        if(after != null)
+            distributions.compute(new Key(after), (key, distribution) -> {
+                if(distribution == null)
+                    distribution = new PriceDistribution();
+                distribution.add(after.getPrice());
+                return distribution;
+            });
+    }
+
+    public List<CarStats> stats(String brand, String model, Integer year, List<Double> percentiles) {
+        validate(percentiles);
+        return matching(brand, model, year)
+                .sorted(Map.Entry.comparingByKey(KEY_ORDER))
+                .map(entry -> toStats(entry.getKey().brand, entry.getKey().model, entry.getKey().year,
+                        entry.getValue(), percentiles))
+                .collect(Collectors.toList());
+    }
+
+    public CarStats summary(String brand, String model, Integer year, List<Double> percentiles) {
+        validate(percentiles);
+        PriceDistribution merged = new PriceDistribution();
+        matching(brand, model, year).forEach(entry -> merged.merge(entry.getValue()));
+        return toStats(brand, model, year, merged, percentiles);
+    }
+
+    private Stream<Map.Entry<Key, PriceDistribution>> matching(String brand, String model, Integer year) {
+        return distributions.entrySet().stream()
+                .filter(entry -> (brand == null || brand.equals(entry.getKey().brand))
+                        && (model == null || model.equals(entry.getKey().model))
+                        && (year == null || year == entry.getKey().year));
+    }
+
+    private static CarStats toStats(String brand, String model, Integer year,
+                                    PriceDistribution distribution, List<Double> percentiles) {
+        Map<String, Integer> values = new LinkedHashMap<>();
+        for(Double percentile : percentiles)
+            values.put(percentile.toString(), distribution.quantile(percentile));
+        return new CarStats(brand, model, year, distribution.getCount(), distribution.getAverage(),
+                distribution.quantile(0), distribution.quantile(1), values);
+    }
+
+    private static void validate(List<Double> percentiles) {
+        if(percentiles.stream().anyMatch(percentile -> percentile == null || percentile < 0 || percentile > 1))
+            throw new CarSearchNotValidException();
+    }
+
+    private static final class Key {
+        final String brand;
+        final String model;
+        final int year;
+
+        Key(CarSnapshot car) {
+            this.brand = car.getBrand();
+            this.model = car.getModel();
+            this.year = car.getYear();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o)
+                return true;
+            if(!(o instanceof Key))
+                return false;
+            Key key = (Key) o;
+            return year == key.year && brand.equals(key.brand) && model.equals(key.model);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(brand, model, year);
+        }
+    }
+}
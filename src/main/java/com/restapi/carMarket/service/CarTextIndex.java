@@ -0,0 +1,236 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.CarSnapshot;
+import com.restapi.carMarket.model.CarSuggestion;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Typo tolerant search over brand and model, maintained from the {@link CarCatalog}.
+ * There are few distinct brand/model names compared to cars, so a trigram index maps query words
+ * to similar words of those names, and every name keeps the ids of its cars, newest first.
+ */
+@Service
+public class CarTextIndex implements CarCatalogListener {
+
+    static final double MIN_SIMILARITY = 0.3;
+    static final double PREFIX_SIMILARITY = 0.9;
+    static final int MAX_SUGGESTIONS = 50;
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final Map<Name, Listing> names = new ConcurrentHashMap<>();
+    private final Map<String, Word> words = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> trigrams = new ConcurrentHashMap<>();
+
+    @Override
+    public void onChange(CarSnapshot before, CarSnapshot after) {
+        if(before != null && after != null && before.getBrand().equals(after.getBrand())
+                && before.getModel().equals(after.getModel()))
+            return;
+        if(before != null)
+            names.computeIfPresent(new Name(before.getBrand(), before.getModel()), (name, listing) -> {
+                if(listing.ids.remove(before.getId()))
+                    listing.count--;
+                if(listing.count > 0)
+                    return listing;
+                name.words.forEach(word -> removeWord(word, name));
+                return null;
+            });
+        if(after != null)
+            names.compute(new Name(after.getBrand(), after.getModel()), (name, listing) -> {
+                if(listing == null) {
+                    listing = new Listing();
+                    name.words.forEach(word -> addWord(word, name));
+                }
+                if(listing.ids.add(after.getId()))
+                    listing.count++;
+                return listing;
+            });
+    }
+
+    /**
+     * Brand/model names matching the query best, with the number of cars listed under each.
+     * The last query word also matches as a prefix, so partial input autocompletes.
+     */
+    public List<CarSuggestion> suggest(String query, int limit) {
+        return rank(query).stream()
+                .limit(Math.max(1, Math.min(limit, MAX_SUGGESTIONS)))
+                .map(match -> new CarSuggestion(match.name.brand, match.name.model, match.count, match.score))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Ids of up to {@code limit} cars of the best matching names, best name first and newest car first within a name.
+     */
+    public List<Long> search(String query, int limit) {
+        List<Long> ids = new ArrayList<>(limit);
+        for(Match match : rank(query))
+            for(Long id : match.listing.ids) {
+                if(ids.size() == limit)
+                    return ids;
+                ids.add(id);
+            }
+        return ids;
+    }
+
+    private List<Match> rank(String query) {
+        List<String> tokens = tokenize(query);
+        Map<Name, double[]> similarities = new HashMap<>();
+        for(int i = 0; i < tokens.size(); i++) {
+            int token = i;
+            similarWords(tokens.get(i), i == tokens.size() - 1).forEach((word, similarity) -> {
+                for(Name name : word.names) {
+                    double[] best = similarities.computeIfAbsent(name, key -> new double[tokens.size()]);
+                    best[token] = Math.max(best[token], similarity);
+                }
+            });
+        }
+
+        List<Match> matches = new ArrayList<>(similarities.size());
+        similarities.forEach((name, best) -> {
+            Listing listing = names.get(name);
+            if(listing != null)
+                matches.add(new Match(name, listing, Arrays.stream(best).sum() / best.length));
+        });
+        matches.sort(Comparator.comparingDouble((Match match) -> match.score).reversed()
+                .thenComparing(Comparator.comparingLong((Match match) -> match.count).reversed()));
+        return matches;
+    }
+
+    private Map<Word, Double> similarWords(String token, boolean prefix) {
+        Set<String> tokenTrigrams = trigrams(token);
+        Map<String, Integer> shared = new HashMap<>();
+        for(String trigram : tokenTrigrams) {
+            Set<String> candidates = trigrams.get(trigram);
+            if(candidates != null)
+                for(String candidate : candidates)
+                    shared.merge(candidate, 1, Integer::sum);
+        }
+
+        Map<Word, Double> similar = new HashMap<>();
+        shared.forEach((candidate, count) -> {
+            Word word = words.get(candidate);
+            if(word == null)
+                return;
+            double similarity = candidate.equals(token) ? 1
+                    : prefix && candidate.startsWith(token) ? PREFIX_SIMILARITY
+                    : (double) count / (tokenTrigrams.size() + word.trigrams - count);
+            if(similarity >= MIN_SIMILARITY)
+                similar.put(word, similarity);
+        });
+        return similar;
+    }
+
+    private void addWord(String text, Name name) {
+        words.compute(text, (key, word) -> {
+            if(word == null) {
+                Set<String> wordTrigrams = trigrams(text);
+                word = new Word(wordTrigrams.size());
+                for(String trigram : wordTrigrams)
+                    trigrams.computeIfAbsent(trigram, t -> ConcurrentHashMap.newKeySet()).add(text);
+            }
+            word.names.add(name);
+            return word;
+        });
+    }
+
+    private void removeWord(String text, Name name) {
+        words.computeIfPresent(text, (key, word) -> {
+            word.names.remove(name);
+            if(!word.names.isEmpty())
+                return word;
+            for(String trigram : trigrams(text))
+                trigrams.computeIfPresent(trigram, (t, candidates) -> {
+                    candidates.remove(text);
+                    return candidates.isEmpty() ? null : candidates;
+                });
+            return null;
+        });
+    }
+
+    static List<String> tokenize(String text) {
+        return Arrays.stream(SEPARATORS.split(text.toLowerCase(Locale.ROOT)))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    static Set<String> trigrams(String word) {
+        String padded = "  " + word + " ";
+        Set<String> trigrams = new LinkedHashSet<>();
+        for(int i = 0; i + 3 <= padded.length(); i++)
+            trigrams.add(padded.substring(i, i + 3));
+        return trigrams;
+    }
+
+    private static final class Name {
+        final String brand;
+        final String model;
+        final List<String> words;
+
+        Name(String brand, String model) {
+            this.brand = brand;
+            this.model = model;
+            this.words = tokenize(brand + " " + model);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o)
+                return true;
+            if(!(o instanceof Name))
+                return false;
+            Name name = (Name) o;
+            return brand.equals(name.brand) && model.equals(name.model);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(brand, model);
+        }
+    }
+
+    private static final class Listing {
+        final NavigableSet<Long> ids = new ConcurrentSkipListSet<>(Comparator.reverseOrder());
+        volatile long count;
+    }
+
+    private static final class Word {
+        final Set<Name> names = ConcurrentHashMap.newKeySet();
+        final int trigrams;
+
+        Word(int trigrams) {
+            this.trigrams = trigrams;
+        }
+    }
+
+    private static final class Match {
+        final Name name;
+        final Listing listing;
+        final long count;
+        final double score;
+
+        Match(Name name, Listing listing, double score) {
+            this.name = name;
+            this.listing = listing;
+            this.count = listing.count;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.restapi.carMarket.service;
+
+import java.util.Arrays;
+
+/**
+ * Count, sum and a log-bucketed sketch of prices (in the style of DDSketch). Every price falls into
+ * bucket {@code ceil(log(price) / log(gamma))}, so quantiles come back within {@link #RELATIVE_ACCURACY}
+ * of the true value. Buckets only hold counts, which makes the sketch mergeable and lets prices be removed again.
+ */
+public class PriceDistribution {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    private long count;
+    private long sum;
+    private int offset;
+    private long[] buckets = new long[0];
+
+    public synchronized void add(int price) {
+        update(index(price), 1);
+        count++;
+        sum += price;
+    }
+
+    public synchronized void remove(int price) {
+        update(index(price), -1);
+        count--;
+        sum -= price;
+    }
+
+    public synchronized void merge(PriceDistribution other) {
+        synchronized(other) {
+            for(int i = 0; i < other.buckets.length; i++)
+                if(other.buckets[i] != 0)
+                    update(other.offset + i, other.buckets[i]);
+            count += other.count;
+            sum += other.sum;
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return count == 0;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getAverage() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public synchronized int quantile(double q) {
+        if(count == 0)
+            return 0;
+        long rank = (long) (q * (count - 1));
+        long seen = 0;
+        for(int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if(seen > rank)
+                return value(offset + i);
+        }
+        return value(offset + buckets.length - 1);
+    }
+
+    private void update(int index, long delta) {
+        if(buckets.length == 0) {
+            offset = index;
+            buckets = new long[1];
+        } else if(index < offset) {
+            long[] grown = new long[buckets.length + offset - index];
+            System.arraycopy(buckets, 0, grown, offset - index, buckets.length);
+            buckets = grown;
+            offset = index;
+        } else if(index >= offset + buckets.length) {
+            buckets = Arrays.copyOf(buckets, index - offset + 1);
+        }
+        buckets[index - offset] += delta;
+    }
+
+    private static int index(int price) {
+        return (int) Math.ceil(Math.log(Math.max(price, 1)) / LOG_GAMMA);
+    }
+
+    private static int value(int index) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.round(2 * Math.pow(GAMMA, index) / (GAMMA + 1)));
+    }
+}
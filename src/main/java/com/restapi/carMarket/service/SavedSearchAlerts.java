@@ -0,0 +1,235 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.CarAlert;
+import com.restapi.carMarket.model.CarSnapshot;
+import com.restapi.carMarket.model.CarView;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers the alerts of each saved search by long polling or over server-sent events, the same way
+ * {@link CarChangeFeed} serves changes. The last {@code carmarket.alerts.buffer-size} alerts of every search
+ * are kept in memory, so a client that reconnects with the last seq it saw gets what it missed meanwhile.
+ * Alerts are stored and long polls answered on one notifier thread, which keeps the writing request out of
+ * the delivery. Each stream is written by a sender task of its own that catches up from the buffer, so a
+ * stalled client holds up nobody else. Every instance raises the alerts of the changes its catalog sees,
+ * including those synced from other instances, so clients are woken wherever they are connected.
+ */
+@Service
+public class SavedSearchAlerts {
+
+    @Value("${carmarket.alerts.buffer-size:100}")
+    int bufferSize;
+
+    @Value("${carmarket.alerts.max-wait-ms:60000}")
+    long maxWait;
+
+    @Value("${carmarket.alerts.stream-timeout-ms:600000}")
+    long streamTimeout;
+
+    // starts from the clock, so seqs keep growing across restarts and a resuming client never skips new alerts
+    private final AtomicLong seq = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Map<Long, Deque<CarAlert>> recent = new ConcurrentHashMap<>();
+    // waiting clients by search id, so an alert only visits the clients of the searches it matched
+    private final Map<Long, Queue<Poll>> polls = new ConcurrentHashMap<>();
+    private final Map<Long, Queue<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "car-alert-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService senders = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "car-alert-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    void publish(CarSnapshot car, List<Long> searchIds) {
+        CarView view = CarView.of(car);
+        notifier.execute(() -> {
+            for(Long searchId : searchIds) {
+                Deque<CarAlert> alerts = recent.computeIfAbsent(searchId, id -> new ArrayDeque<>());
+                synchronized(alerts) {
+                    alerts.addLast(new CarAlert(seq.incrementAndGet(), searchId, view));
+                    if(alerts.size() > bufferSize)
+                        alerts.removeFirst();
+                }
+            }
+            for(Long searchId : searchIds) {
+                for(Poll poll : waiting(polls, searchId)) {
+                    List<CarAlert> alerts = alerts(searchId, poll.after);
+                    if(!alerts.isEmpty() && poll.result.setResult(alerts))
+                        unregister(polls, searchId, poll);
+                }
+                for(Subscriber subscriber : waiting(subscribers, searchId))
+                    wake(subscriber);
+            }
+        });
+    }
+
+    /**
+     * The buffered alerts of the search after seq {@code after}, oldest first.
+     */
+    public List<CarAlert> alerts(long searchId, long after) {
+        List<CarAlert> result = new ArrayList<>();
+        Deque<CarAlert> alerts = recent.get(searchId);
+        if(alerts == null)
+            return result;
+        synchronized(alerts) {
+            for(CarAlert alert : alerts)
+                if(alert.getSeq() > after)
+                    result.add(alert);
+        }
+        return result;
+    }
+
+    /**
+     * Completes with the alerts after {@code after} as soon as there are any, or with an empty list
+     * once {@code wait} milliseconds have passed.
+     */
+    public DeferredResult<List<CarAlert>> poll(long searchId, long after, long wait) {
+        DeferredResult<List<CarAlert>> result = new DeferredResult<>(Math.max(1, Math.min(wait, maxWait)), List.of());
+        Poll poll = new Poll(after, result);
+        register(polls, searchId, poll);
+        result.onCompletion(() -> unregister(polls, searchId, poll));
+
+        List<CarAlert> alerts = alerts(searchId, after);
+        if(!alerts.isEmpty() || wait <= 0)
+            result.setResult(alerts);
+        return result;
+    }
+
+    /**
+     * Streams the buffered alerts after {@code after} and then every new one, each with its seq as event id.
+     */
+    public SseEmitter subscribe(long searchId, long after) {
+        SseEmitter emitter = new SseEmitter(streamTimeout);
+        Subscriber subscriber = new Subscriber(searchId, after, emitter);
+        emitter.onCompletion(() -> unregister(subscribers, searchId, subscriber));
+        emitter.onTimeout(emitter::complete);
+        register(subscribers, searchId, subscriber);
+        wake(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Drops the alerts of a deleted search and ends the feeds that follow it.
+     */
+    void remove(long searchId) {
+        notifier.execute(() -> {
+            recent.remove(searchId);
+            for(Poll poll : waiting(polls, searchId))
+                poll.result.setResult(List.of());
+            // completing waits for a send in progress, so it runs on a sender thread
+            for(Subscriber subscriber : waiting(subscribers, searchId))
+                senders.execute(subscriber.emitter::complete);
+        });
+    }
+
+    private static <T> Iterable<T> waiting(Map<Long, Queue<T>> clients, long searchId) {
+        Queue<T> queue = clients.get(searchId);
+        return queue != null ? queue : List.of();
+    }
+
+    // both under the map's lock for the search, so a client is never added to a queue that is being dropped
+    private static <T> void register(Map<Long, Queue<T>> clients, long searchId, T client) {
+        clients.compute(searchId, (id, queue) -> {
+            if(queue == null)
+                queue = new ConcurrentLinkedQueue<>();
+            queue.add(client);
+            return queue;
+        });
+    }
+
+    private static <T> void unregister(Map<Long, Queue<T>> clients, long searchId, T client) {
+        clients.computeIfPresent(searchId, (id, queue) -> {
+            queue.remove(client);
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+
+    /**
+     * Has the subscriber's sender task send whatever is buffered after its last event, starting the task
+     * unless it is already running. A wake while sending makes the task look once more.
+     */
+    private void wake(Subscriber subscriber) {
+        subscriber.pending.set(true);
+        if(subscriber.draining.compareAndSet(false, true))
+            senders.execute(() -> drain(subscriber));
+    }
+
+    private void drain(Subscriber subscriber) {
+        do {
+            while(subscriber.pending.getAndSet(false))
+                if(!send(subscriber)) {
+                    unregister(subscribers, subscriber.searchId, subscriber);
+                    return;
+                }
+            subscriber.draining.set(false);
+            // a wake after the last look but before the flag was cleared has nobody sending for it
+        } while(subscriber.pending.get() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    private boolean send(Subscriber subscriber) {
+        try {
+            for(CarAlert alert : alerts(subscriber.searchId, subscriber.lastSeq)) {
+                subscriber.emitter.send(SseEmitter.event().id(Long.toString(alert.getSeq())).name("alert")
+                        .data(alert, MediaType.APPLICATION_JSON));
+                subscriber.lastSeq = alert.getSeq();
+            }
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            subscriber.emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        notifier.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private static final class Poll {
+        final long after;
+        final DeferredResult<List<CarAlert>> result;
+
+        Poll(long after, DeferredResult<List<CarAlert>> result) {
+            this.after = after;
+            this.result = result;
+        }
+    }
+
+    private static final class Subscriber {
+        final long searchId;
+        final SseEmitter emitter;
+        final AtomicBoolean pending = new AtomicBoolean();
+        final AtomicBoolean draining = new AtomicBoolean();
+        // only touched by the sender task draining the subscriber
+        long lastSeq;
+
+        Subscriber(long searchId, long lastSeq, SseEmitter emitter) {
+            this.searchId = searchId;
+            this.lastSeq = lastSeq;
+            this.emitter = emitter;
+        }
+    }
+}
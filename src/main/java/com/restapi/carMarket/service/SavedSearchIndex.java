@@ -0,0 +1,265 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.CarSnapshot;
+import com.restapi.carMarket.model.SavedSearch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Percolator over the saved searches: instead of running every standing query against the listings,
+ * each changed listing is run against the queries. Searches are bucketed by brand and model, with a
+ * bucket for each of them left open, so a car only looks at four buckets. Within a bucket an interval
+ * tree over the price ranges finds the stabbed searches in logarithmic time plus the hits, and the
+ * year range is checked on those.
+ * <p>
+ * A bucket keeps its searches in levels of roughly halving size, each with its own tree, and an add only
+ * rebuilds the levels it merges into a new one, like a carry in a binary counter. Adding n searches one at
+ * a time thus costs O(n log² n) rather than a rebuild of the whole bucket each time, and a match looks at
+ * O(log n) trees. Buckets and levels are immutable and replaced on every change, so matching on the
+ * writing request thread never waits for a lock. Once the catalog is loaded, every car that starts to
+ * match a search, by being posted or by an update, is handed to {@link SavedSearchAlerts}.
+ */
+@Service
+public class SavedSearchIndex implements CarCatalogListener {
+
+    @Autowired
+    SavedSearchAlerts savedSearchAlerts;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private volatile boolean live;
+
+    @Override
+    public void onLoaded() {
+        live = true;
+    }
+
+    @Override
+    public void onChange(CarSnapshot before, CarSnapshot after) {
+        if(!live || after == null)
+            return;
+        List<Long> hits = match(after);
+        if(before != null && !hits.isEmpty())
+            hits.removeAll(new HashSet<>(match(before)));
+        if(!hits.isEmpty())
+            savedSearchAlerts.publish(after, hits);
+    }
+
+    /**
+     * Ids of the saved searches the car matches.
+     */
+    public List<Long> match(CarSnapshot car) {
+        List<Long> hits = new ArrayList<>();
+        collect(buckets.get(key(car.getBrand(), car.getModel())), car, hits);
+        collect(buckets.get(key(car.getBrand(), null)), car, hits);
+        collect(buckets.get(key(null, car.getModel())), car, hits);
+        collect(buckets.get(key(null, null)), car, hits);
+        return hits;
+    }
+
+    public void add(SavedSearch search) {
+        addAll(List.of(search));
+    }
+
+    /**
+     * Adds the searches, rebuilding each affected bucket only once.
+     */
+    public synchronized void addAll(Collection<SavedSearch> searches) {
+        Map<String, List<SavedSearch>> added = new LinkedHashMap<>();
+        for(SavedSearch search : searches)
+            added.computeIfAbsent(key(search.getBrand(), search.getModel()), key -> new ArrayList<>()).add(search);
+        added.forEach((key, bucketSearches) -> {
+            Bucket bucket = buckets.get(key);
+            buckets.put(key, (bucket == null ? Bucket.EMPTY : bucket).adding(bucketSearches));
+        });
+    }
+
+    public synchronized void remove(SavedSearch search) {
+        String key = key(search.getBrand(), search.getModel());
+        Bucket bucket = buckets.get(key);
+        if(bucket == null)
+            return;
+        Bucket rest = bucket.removing(search.getId());
+        if(rest.levels.length == 0)
+            buckets.remove(key);
+        else
+            buckets.put(key, rest);
+    }
+
+    public int size() {
+        return buckets.values().stream().mapToInt(Bucket::size).sum();
+    }
+
+    private static void collect(Bucket bucket, CarSnapshot car, List<Long> hits) {
+        if(bucket == null)
+            return;
+        for(Level level : bucket.levels)
+            collect(level.root, car, hits);
+    }
+
+    private static void collect(Node root, CarSnapshot car, List<Long> hits) {
+        int price = car.getPrice();
+        int year = car.getYear();
+        Node node = root;
+        while(node != null) {
+            if(price < node.center) {
+                for(SavedSearch search : node.byLowest) {
+                    if(search.lowestPrice() > price)
+                        break;
+                    collect(search, year, hits);
+                }
+                node = node.left;
+            } else if(price > node.center) {
+                for(SavedSearch search : node.byHighest) {
+                    if(search.highestPrice() < price)
+                        break;
+                    collect(search, year, hits);
+                }
+                node = node.right;
+            } else {
+                for(SavedSearch search : node.byLowest)
+                    collect(search, year, hits);
+                node = null;
+            }
+        }
+    }
+
+    private static void collect(SavedSearch search, int year, List<Long> hits) {
+        if(search.lowestYear() <= year && year <= search.highestYear())
+            hits.add(search.getId());
+    }
+
+    private static String key(String brand, String model) {
+        // a car never has a blank brand or model, so the empty string can stand for "any"
+        return (brand == null ? "" : brand) + '\0' + (model == null ? "" : model);
+    }
+
+    /**
+     * The levels of a bucket, largest first.
+     */
+    private static final class Bucket {
+        static final Bucket EMPTY = new Bucket(new Level[0]);
+
+        final Level[] levels;
+
+        Bucket(Level[] levels) {
+            this.levels = levels;
+        }
+
+        /**
+         * Merges the new searches with every trailing level that is no larger than what has been merged so far,
+         * which keeps each level at least as large as all later ones together.
+         */
+        Bucket adding(List<SavedSearch> added) {
+            List<SavedSearch> merged = new ArrayList<>(added);
+            int kept = levels.length;
+            while(kept > 0 && levels[kept - 1].searches.length <= merged.size())
+                merged.addAll(Arrays.asList(levels[--kept].searches));
+            Level[] next = Arrays.copyOf(levels, kept + 1);
+            next[kept] = new Level(merged);
+            return new Bucket(next);
+        }
+
+        /**
+         * Rebuilds only the level that holds the search.
+         */
+        Bucket removing(Long searchId) {
+            for(int i = 0; i < levels.length; i++) {
+                List<SavedSearch> rest = new ArrayList<>(levels[i].searches.length);
+                for(SavedSearch other : levels[i].searches)
+                    if(!other.getId().equals(searchId))
+                        rest.add(other);
+                if(rest.size() == levels[i].searches.length)
+                    continue;
+                List<Level> next = new ArrayList<>(Arrays.asList(levels));
+                if(rest.isEmpty())
+                    next.remove(i);
+                else
+                    next.set(i, new Level(rest));
+                return new Bucket(next.toArray(new Level[0]));
+            }
+            return this;
+        }
+
+        int size() {
+            return Arrays.stream(levels).mapToInt(level -> level.searches.length).sum();
+        }
+    }
+
+    private static final class Level {
+        final SavedSearch[] searches;
+        final Node root;
+
+        Level(List<SavedSearch> searches) {
+            this.searches = searches.toArray(new SavedSearch[0]);
+            // an empty price range matches nothing and would never settle on either side of a center
+            this.root = Node.build(searches.stream()
+                    .filter(search -> search.lowestPrice() <= search.highestPrice())
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Centered interval tree node over price ranges: the searches whose range contains {@code center},
+     * once sorted by lower and once by upper bound, and subtrees for the ranges entirely below and above it.
+     */
+    private static final class Node {
+        final int center;
+        final SavedSearch[] byLowest;
+        final SavedSearch[] byHighest;
+        final Node left;
+        final Node right;
+
+        Node(int center, SavedSearch[] byLowest, SavedSearch[] byHighest, Node left, Node right) {
+            this.center = center;
+            this.byLowest = byLowest;
+            this.byHighest = byHighest;
+            this.left = left;
+            this.right = right;
+        }
+
+        /**
+         * Centers on the median endpoint, which belongs to at least one range, so every level
+         * keeps at least one search and each subtree gets at most half of them.
+         */
+        static Node build(List<SavedSearch> searches) {
+            if(searches.isEmpty())
+                return null;
+            int[] endpoints = new int[searches.size() * 2];
+            for(int i = 0; i < searches.size(); i++) {
+                endpoints[2 * i] = searches.get(i).lowestPrice();
+                endpoints[2 * i + 1] = searches.get(i).highestPrice();
+            }
+            Arrays.sort(endpoints);
+            int center = endpoints[searches.size()];
+
+            List<SavedSearch> below = new ArrayList<>();
+            List<SavedSearch> above = new ArrayList<>();
+            List<SavedSearch> containing = new ArrayList<>();
+            for(SavedSearch search : searches) {
+                if(search.highestPrice() < center)
+                    below.add(search);
+                else if(search.lowestPrice() > center)
+                    above.add(search);
+                else
+                    containing.add(search);
+            }
+
+            SavedSearch[] byLowest = containing.toArray(new SavedSearch[0]);
+            Arrays.sort(byLowest, Comparator.comparingInt(SavedSearch::lowestPrice));
+            SavedSearch[] byHighest = containing.toArray(new SavedSearch[0]);
+            Arrays.sort(byHighest, Comparator.comparingInt(SavedSearch::highestPrice).reversed());
+            return new Node(center, byLowest, byHighest, build(below), build(above));
+        }
+    }
+}
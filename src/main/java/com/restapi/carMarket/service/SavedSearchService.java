@@ -0,0 +1,71 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.dao.SavedSearchDao;
+import com.restapi.carMarket.exceptions.CarSearchNotValidException;
+import com.restapi.carMarket.exceptions.SavedSearchNotFoundException;
+import com.restapi.carMarket.model.SavedSearch;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stores the saved searches and keeps the {@link SavedSearchIndex} in step with the table.
+ * Searches enter and leave the index only after their write committed.
+ */
+@Service
+public class SavedSearchService {
+
+    @Autowired
+    SavedSearchDao savedSearchDao;
+
+    @Autowired
+    SavedSearchIndex savedSearchIndex;
+
+    @Autowired
+    SavedSearchAlerts savedSearchAlerts;
+
+    // Not read-only, so searches saved just before are read from the primary even if a replica lags behind.
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void load() {
+        savedSearchIndex.addAll(savedSearchDao.findAll());
+    }
+
+    public SavedSearch save(SavedSearch search) {
+        if(!isValid(search))
+            throw new CarSearchNotValidException();
+        search.setId(null);
+        search.setCreatedTime(LocalDateTime.now());
+        SavedSearch saved = savedSearchDao.save(search);
+        savedSearchIndex.add(saved);
+        return saved;
+    }
+
+    public SavedSearch findById(Long id) {
+        return savedSearchDao.findById(id).orElseThrow(SavedSearchNotFoundException::new);
+    }
+
+    public void deleteById(Long id) {
+        SavedSearch search = findById(id);
+        savedSearchDao.delete(search);
+        savedSearchIndex.remove(search);
+        savedSearchAlerts.remove(id);
+    }
+
+    private boolean isValid(SavedSearch search) {
+        boolean valid = true;
+        if(search.getBrand() != null && search.getBrand().trim().isEmpty())
+            valid = false;
+        else if(search.getModel() != null && search.getModel().trim().isEmpty())
+            valid = false;
+        else if(search.lowestYear() > search.highestYear())
+            valid = false;
+        else if(search.lowestPrice() > search.highestPrice())
+            valid = false;
+        return valid;
+    }
+}
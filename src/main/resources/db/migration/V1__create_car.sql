@@ -0,0 +1,12 @@
+-- The car table as Hibernate generated it at startup before migrations took over. Databases created that way
+-- already have it; they are baselined at V0, so this runs on them as a no-op and V2 brings both kinds up to date.
+
+create table if not exists car (
+    id bigint not null,
+    brand varchar(255),
+    model varchar(255),
+    post_time timestamp,
+    price integer not null,
+    year integer not null,
+    primary key (id)
+);
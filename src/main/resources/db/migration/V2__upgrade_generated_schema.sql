@@ -0,0 +1,31 @@
+-- Brings the generated schema, in whatever state the last Hibernate-managed release left it, up to the mapping:
+-- every step is skipped where it already happened. Ids used to come from hibernate_sequence one at a time; they
+-- now come from car_seq in blocks of 50, which the vendor's V2_1 moves past the ids already taken. H2 needs none,
+-- as its databases are only ever created empty, in memory.
+
+alter table car add column if not exists modified_time timestamp;
+alter table car add column if not exists version bigint;
+update car set version = 0 where version is null;
+alter table car alter column version set default 0;
+alter table car alter column version set not null;
+
+create sequence if not exists car_seq start with 1 increment by 50;
+create sequence if not exists car_change_id_seq start with 1 increment by 50;
+drop sequence if exists hibernate_sequence;
+
+create index if not exists idx_car_brand_model_year_price on car (brand, model, year, price);
+create index if not exists idx_car_brand_model_price on car (brand, model, price);
+create index if not exists idx_car_post_time on car (post_time);
+create index if not exists idx_car_modified_time on car (modified_time, id);
+
+create table if not exists car_change (
+    id bigint not null,
+    seq bigint,
+    type varchar(16) not null,
+    car_id bigint not null,
+    data varchar(4000),
+    time timestamp,
+    primary key (id)
+);
+
+create unique index if not exists idx_car_change_seq on car_change (seq);
@@ -0,0 +1,13 @@
+create sequence saved_search_seq start with 1 increment by 50;
+
+create table saved_search (
+    id bigint not null,
+    brand varchar(255),
+    model varchar(255),
+    min_year integer,
+    max_year integer,
+    min_price integer,
+    max_price integer,
+    created_time timestamp,
+    primary key (id)
+);
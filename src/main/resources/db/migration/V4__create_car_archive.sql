@@ -0,0 +1,20 @@
+-- Listings older than carmarket.archive.max-age-days are moved here by the archival job, going by their post time,
+-- which from now on every car has.
+
+update car set post_time = coalesce(modified_time, current_timestamp) where post_time is null;
+alter table car alter column post_time set not null;
+
+create table car_archive (
+    id bigint not null,
+    brand varchar(255),
+    model varchar(255),
+    year integer not null,
+    price integer not null,
+    post_time timestamp not null,
+    modified_time timestamp,
+    version bigint default 0 not null,
+    archived_time timestamp not null,
+    primary key (id)
+);
+
+create index idx_car_archive_post_time on car_archive (post_time);
@@ -0,0 +1,82 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.api.CarController;
+import com.restapi.carMarket.config.LoadSheddingInterceptor;
+import com.restapi.carMarket.config.TokenBucket;
+import com.restapi.carMarket.exceptions.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CarAdmissionControlTest {
+
+    @Test
+    public void bucketShouldAdmitBurstThenRefillAtRate() {
+        TokenBucket bucket = new TokenBucket(10, 3);
+        long now = 1_000_000_000L;
+
+        for(int i = 0; i < 3; i++)
+            Assert.assertEquals(0, bucket.tryAcquire(now));
+        Assert.assertEquals(100_000_000L, bucket.tryAcquire(now));
+        Assert.assertEquals(40_000_000L, bucket.tryAcquire(now + 60_000_000L));
+        Assert.assertEquals(0, bucket.tryAcquire(now + 100_000_000L));
+        Assert.assertTrue(bucket.tryAcquire(now + 100_000_000L) > 0);
+    }
+
+    @Test
+    public void bucketShouldAdmitExactlyTheBurstUnderContention() throws Exception {
+        TokenBucket bucket = new TokenBucket(0.001, 100);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Callable<Integer>> clients = new ArrayList<>();
+        for(int i = 0; i < 8; i++)
+            clients.add(() -> {
+                int admitted = 0;
+                for(int j = 0; j < 1000; j++)
+                    if(bucket.tryAcquire(0) == 0)
+                        admitted++;
+                return admitted;
+            });
+
+        int admitted = 0;
+        for(Future<Integer> client : executor.invokeAll(clients))
+            admitted += client.get();
+        executor.shutdown();
+        Assert.assertEquals(100, admitted);
+    }
+
+    @Test
+    public void shedderShouldRejectOverTheConcurrencyLimitUntilARequestCompletes() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LoadSheddingInterceptor shedder = new LoadSheddingInterceptor(
+                new MockEnvironment().withProperty("carmarket.load-shedding.findAll.max-concurrent", "1"), registry);
+        HandlerMethod findAll = new HandlerMethod(new CarController(),
+                CarController.class.getMethod("findAll", String.class, Integer.class, HttpHeaders.class));
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        Assert.assertTrue(shedder.preHandle(first, response, findAll));
+        try {
+            shedder.preHandle(new MockHttpServletRequest(), response, findAll);
+            Assert.fail();
+        } catch (ServiceOverloadedException e) {
+            Assert.assertEquals("1", response.getHeader("Retry-After"));
+        }
+        shedder.afterCompletion(first, response, findAll, null);
+        Assert.assertTrue(shedder.preHandle(new MockHttpServletRequest(), response, findAll));
+
+        Assert.assertEquals(1.0, registry.get("cars.rejected").tag("endpoint", "findAll").tag("reason", "concurrency")
+                .counter().count(), 0.0);
+    }
+}
@@ -0,0 +1,95 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.CarMarketApplication;
+import com.restapi.carMarket.exceptions.CarNotFoundException;
+import com.restapi.carMarket.model.Car;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CarMarketApplication.class)
+@AutoConfigureMockMvc
+public class CarArchiveIntegrationTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    CarService carService;
+
+    @Autowired
+    CarCatalog carCatalog;
+
+    @Test
+    public void staleCarsShouldMoveToTheArchiveInBoundedBatches() throws Exception {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(180);
+        List<Long> stale = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            Car car = new Car("Lada", "Niva", 1995 + i, 3000);
+            car.setPostTime(cutoff.minusYears(2).plusDays(i));
+            carService.insert(car);
+            stale.add(car.getId());
+        }
+        Car fresh = new Car("Lada", "Vesta", 2021, 12000);
+        carService.insert(fresh);
+
+        CarArchiver archiver = archiver(2, 1);
+        Assert.assertEquals(2, archiver.archive(cutoff));
+        Assert.assertEquals(1, archiver.archive(cutoff));
+        Assert.assertEquals(0, archiver.archive(cutoff));
+
+        for(Long id : stale) {
+            Assert.assertNull(carCatalog.get(id));
+            try {
+                carService.findById(id);
+                Assert.fail();
+            } catch (CarNotFoundException expected) {
+            }
+        }
+        Assert.assertEquals("Vesta", carService.findById(fresh.getId()).getModel());
+
+        mockMvc.perform(get("/cars/archive").param("size", "500"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cars[*].id", hasItems(stale.get(0).intValue(), stale.get(1).intValue(), stale.get(2).intValue())))
+                .andExpect(jsonPath("$.cars[*].id", not(hasItems(fresh.getId().intValue()))));
+        mockMvc.perform(get("/cars/archive/" + stale.get(0)))
+                .andExpect(jsonPath("model", is("Niva")))
+                .andExpect(jsonPath("archivedTime", notNullValue()));
+        mockMvc.perform(get("/cars/archive/" + fresh.getId())).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void carsPostedWithoutPostTimeShouldBePostedNow() {
+        Car car = new Car("Lada", "Granta", 2020, 8000);
+        car.setPostTime(null);
+        carService.insert(car);
+
+        Assert.assertNotNull(carService.findById(car.getId()).getPostTime());
+        Assert.assertEquals(0, archiver(10, 10).archive(LocalDateTime.now().minusDays(1)));
+    }
+
+    private CarArchiver archiver(int batchSize, int maxBatches) {
+        CarArchiver archiver = new CarArchiver();
+        archiver.carService = carService;
+        archiver.batchSize = batchSize;
+        archiver.maxBatches = maxBatches;
+        return archiver;
+    }
+}
@@ -0,0 +1,94 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.model.Car;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class CarBatchLoaderTest {
+
+    private final CarBatchLoader carBatchLoader = new CarBatchLoader();
+
+    @Before
+    public void setUp() {
+        carBatchLoader.carDao = Mockito.mock(CarDao.class);
+        Mockito.when(carBatchLoader.carDao.multiLoad(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> id < 0 ? null : car(id)).collect(Collectors.toList());
+        });
+        carBatchLoader.windowMicros = 200_000;
+        carBatchLoader.batchSize = 100;
+    }
+
+    @Test
+    public void concurrentLookupsShouldShareOneDeduplicatedQuery() throws Exception {
+        List<Optional<Car>> cars = loadConcurrently(new long[] {1, 2, 2, 3, -1, 1, 3, 2});
+
+        ArgumentCaptor<List<Long>> ids = ArgumentCaptor.forClass(List.class);
+        verify(carBatchLoader.carDao).multiLoad(ids.capture());
+        Assert.assertEquals(4, ids.getValue().size());
+        verify(carBatchLoader.carDao, never()).findById(anyLong());
+        Assert.assertEquals("2", cars.get(2).get().getModel());
+        Assert.assertFalse(cars.get(4).isPresent());
+    }
+
+    @Test
+    public void fullBatchShouldBeLoadedWithoutWaitingForTheWindow() throws Exception {
+        carBatchLoader.windowMicros = 60_000_000;
+        carBatchLoader.batchSize = 2;
+
+        long start = System.nanoTime();
+        loadConcurrently(new long[] {1, 2});
+        Assert.assertTrue(System.nanoTime() - start < 30_000_000_000L);
+        ArgumentCaptor<List<Long>> ids = ArgumentCaptor.forClass(List.class);
+        verify(carBatchLoader.carDao).multiLoad(ids.capture());
+        Assert.assertEquals(Set.of(1L, 2L), new HashSet<>(ids.getValue()));
+    }
+
+    private List<Optional<Car>> loadConcurrently(long[] ids) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(ids.length);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Callable<Optional<Car>>> lookups = new ArrayList<>();
+        for(long id : ids)
+            lookups.add(() -> {
+                start.await();
+                return carBatchLoader.load(id);
+            });
+        List<Future<Optional<Car>>> futures = new ArrayList<>();
+        for(Callable<Optional<Car>> lookup : lookups)
+            futures.add(executor.submit(lookup));
+        start.countDown();
+
+        List<Optional<Car>> cars = new ArrayList<>();
+        for(Future<Optional<Car>> future : futures)
+            cars.add(future.get());
+        executor.shutdown();
+        return cars;
+    }
+
+    private static Car car(long id) {
+        Car car = new Car("Brand", Long.toString(id), 2018, 10000);
+        car.setId(id);
+        return car;
+    }
+}
@@ -0,0 +1,93 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.dao.CarChangeDao;
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.events.CarSavedEvent;
+import com.restapi.carMarket.events.CarsDeletedEvent;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarChange;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.cache.CacheManager;
+
+import javax.persistence.EntityManager;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+
+public class CarCatalogTest {
+    private final CarCatalog carCatalog = new CarCatalog();
+
+    @Before
+    public void setUp() {
+        carCatalog.carDao = Mockito.mock(CarDao.class);
+        carCatalog.carChangeDao = Mockito.mock(CarChangeDao.class);
+        carCatalog.entityManager = Mockito.mock(EntityManager.class);
+        carCatalog.carChangeFeed = Mockito.mock(CarChangeFeed.class);
+        carCatalog.cacheManager = Mockito.mock(CacheManager.class);
+        carCatalog.listeners = Collections.emptyList();
+        carCatalog.syncBatchSize = 500;
+    }
+
+    @Test
+    public void carsDeletedDuringTheScanShouldNotComeBack() {
+        Car deleted = car(1L, "Skoda", 0L);
+        Car kept = car(2L, "Seat", 0L);
+        given(carCatalog.carDao.streamAll()).willReturn(Stream.of(deleted, kept).peek(car -> {
+            if(car == deleted) {
+                CarsDeletedEvent event = CarsDeletedEvent.ofIds(List.of(deleted.getId()));
+                carCatalog.onDeleting(event);
+                carCatalog.onDeleted(event);
+            }
+        }));
+
+        carCatalog.load();
+
+        Assert.assertNull(carCatalog.get(1L));
+        Assert.assertEquals("Seat", carCatalog.get(2L).getBrand());
+        Assert.assertEquals(1, carCatalog.size());
+    }
+
+    @Test
+    public void theScanShouldNotRollBackAWriteMadeDuringIt() {
+        Car scanned = car(1L, "Skoda", 0L);
+        given(carCatalog.carDao.streamAll()).willReturn(Stream.of(scanned).peek(car ->
+                carCatalog.onSaved(new CarSavedEvent(1L, car(1L, "Skoda Octavia", 1L)))));
+
+        carCatalog.load();
+        carCatalog.onSaved(new CarSavedEvent(1L, car(1L, "Skoda", 0L)));
+
+        Assert.assertEquals("Skoda Octavia", carCatalog.get(1L).getBrand());
+        Assert.assertEquals(1L, carCatalog.get(1L).getVersion());
+    }
+
+    @Test
+    public void tombstonesShouldBeClearedWhenTheFeedShowsTheDeleteFirst() {
+        given(carCatalog.carDao.streamAll()).willReturn(Stream.of(car(1L, "Skoda", 0L)));
+        carCatalog.load();
+        CarChange change = new CarChange(CarChange.Type.DELETED, 1L, null);
+        change.setSeq(1L);
+        given(carCatalog.carChangeDao.findBySeqGreaterThanOrderBySeqAsc(eq(0L), any())).willReturn(List.of(change));
+
+        CarsDeletedEvent event = CarsDeletedEvent.ofIds(List.of(1L));
+        carCatalog.onDeleting(event);
+        carCatalog.sync();
+        carCatalog.onDeleted(event);
+
+        Assert.assertNull(carCatalog.get(1L));
+        Assert.assertTrue(carCatalog.tombstones.isEmpty());
+    }
+
+    private static Car car(Long id, String brand, Long version) {
+        Car car = new Car(brand, "Octavia", 2015, 9000);
+        car.setId(id);
+        car.setVersion(version);
+        return car;
+    }
+}
@@ -0,0 +1,188 @@
+package com.restapi.carMarket.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.restapi.carMarket.CarMarketApplication;
+import com.restapi.carMarket.dao.CarChangeDao;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarChange;
+import com.restapi.carMarket.model.CarPatch;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CarMarketApplication.class)
+@AutoConfigureMockMvc
+public class CarChangeFeedIntegrationTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    CarService carService;
+
+    @Autowired
+    CarChangeRelay carChangeRelay;
+
+    @Autowired
+    CarChangeFeed carChangeFeed;
+
+    @Autowired
+    CarChangeOutbox carChangeOutbox;
+
+    @Autowired
+    CarCatalog carCatalog;
+
+    @Autowired
+    CarChangeDao carChangeDao;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    public void writesShouldBePublishedInOrderWithConsecutiveSeqs() {
+        carChangeRelay.relay();
+        long after = carChangeDao.findLastSeq();
+
+        Car car = new Car("Volvo", "V60", 2018, 27000);
+        carService.insert(car);
+        CarPatch patch = new CarPatch();
+        patch.setPrice(26000);
+        carService.patch(car.getId(), patch);
+        carService.deleteById(car.getId());
+
+        Assert.assertTrue(carChangeFeed.changes(after, 10).isEmpty());
+        carChangeRelay.relay();
+
+        List<CarChange> changes = carChangeFeed.changes(after, 10);
+        Assert.assertEquals(Arrays.asList(CarChange.Type.SAVED, CarChange.Type.PATCHED, CarChange.Type.DELETED),
+                changes.stream().map(CarChange::getType).collect(Collectors.toList()));
+        for(int i = 0; i < changes.size(); i++) {
+            Assert.assertEquals(after + i + 1, (long) changes.get(i).getSeq());
+            Assert.assertEquals((long) car.getId(), changes.get(i).getCarId());
+        }
+        Assert.assertTrue(changes.get(1).getData().contains("26000"));
+    }
+
+    @Test
+    public void changesShouldCarryTheCommittedRowRatherThanTheRequest() throws Exception {
+        Car car = new Car("Volvo", "V90", 2017, 33000);
+        carService.insert(car);
+        carChangeRelay.relay();
+        long after = carChangeDao.findLastSeq();
+
+        Car edit = new Car("Volvo", "V90", 2017, 31000);
+        edit.setPostTime(null);
+        carService.update(car.getId(), edit);
+        carChangeRelay.relay();
+
+        List<CarChange> changes = carChangeFeed.changes(after, 10);
+        Assert.assertEquals(1, changes.size());
+        Car published = objectMapper.readValue(changes.get(0).getData(), Car.class);
+        Assert.assertEquals(car.getId(), published.getId());
+        Assert.assertEquals(31000, published.getPrice());
+        Assert.assertEquals(Long.valueOf(1), published.getVersion());
+        Assert.assertEquals(car.getPostTime().withNano(0), published.getPostTime());
+        Assert.assertNotNull(published.getModifiedTime());
+    }
+
+    @Test
+    public void failedWritesShouldNotAppendChanges() {
+        carChangeRelay.relay();
+        long after = carChangeDao.findLastSeq();
+
+        Car car = new Car("Volvo", "XC90", 2019, 52000);
+        car.setVersion(42L);
+        try {
+            carService.update(Long.MAX_VALUE, car);
+            Assert.fail();
+        } catch (RuntimeException expected) {
+        }
+        carChangeRelay.relay();
+
+        Assert.assertTrue(carChangeFeed.changes(after, 10).isEmpty());
+    }
+
+    @Test
+    public void longPollShouldAnswerOnceTheNextChangeIsPublished() throws Exception {
+        carChangeRelay.relay();
+        long after = carChangeDao.findLastSeq();
+
+        MvcResult poll = mockMvc.perform(get("/cars/changes?after=" + after + "&wait=10000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        Car car = new Car("Volvo", "S90", 2020, 41000);
+        carService.insert(car);
+        carChangeRelay.relay();
+
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].seq", is((int) after + 1)))
+                .andExpect(jsonPath("$[0].type", is("SAVED")))
+                .andExpect(jsonPath("$[0].data.model", is("S90")));
+    }
+
+    @Test
+    public void longPollShouldBeAnsweredOnceTheCatalogSyncsAChangeAnotherInstancePublished() throws Exception {
+        carChangeRelay.relay();
+        carCatalog.sync();
+        long after = carChangeDao.findLastSeq();
+
+        MvcResult poll = mockMvc.perform(get("/cars/changes?after=" + after + "&wait=10000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // what another instance's relay leaves behind: a published change this feed was not told about
+        Car car = new Car("Volvo", "V40", 2016, 12000);
+        carService.insert(car);
+        carChangeOutbox.publishPending(10);
+        carCatalog.sync();
+
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].seq", is((int) after + 1)))
+                .andExpect(jsonPath("$[0].data.model", is("V40")));
+    }
+
+    @Test
+    public void streamShouldSendTheBacklogAndThenEveryPublishedChange() throws Exception {
+        Car first = new Car("Volvo", "C30", 2012, 6000);
+        carService.insert(first);
+        carChangeRelay.relay();
+        long after = carChangeDao.findLastSeq() - 1;
+
+        MvcResult stream = mockMvc.perform(get("/cars/changes?after=" + after).accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        Car second = new Car("Volvo", "C70", 2013, 8000);
+        carService.insert(second);
+        carChangeRelay.relay();
+
+        long deadline = System.currentTimeMillis() + 10000;
+        String events;
+        while(!(events = stream.getResponse().getContentAsString()).contains("C70") && System.currentTimeMillis() < deadline)
+            Thread.sleep(20);
+        int firstEvent = events.indexOf("id:" + (after + 1) + "\n");
+        Assert.assertTrue(events, firstEvent >= 0 && firstEvent < events.indexOf("id:" + (after + 2) + "\n"));
+        Assert.assertTrue(events, events.indexOf("C30") < events.indexOf("C70"));
+    }
+}
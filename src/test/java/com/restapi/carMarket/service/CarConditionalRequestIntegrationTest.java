@@ -0,0 +1,196 @@
+package com.restapi.carMarket.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.restapi.carMarket.CarMarketApplication;
+import com.restapi.carMarket.dao.CarChangeDao;
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarChange;
+import com.restapi.carMarket.model.CarPatch;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.persistence.EntityManagerFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.springframework.http.HttpHeaders.ETAG;
+import static org.springframework.http.HttpHeaders.IF_MATCH;
+import static org.springframework.http.HttpHeaders.IF_MODIFIED_SINCE;
+import static org.springframework.http.HttpHeaders.IF_NONE_MATCH;
+import static org.springframework.http.HttpHeaders.LAST_MODIFIED;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CarMarketApplication.class)
+@AutoConfigureMockMvc
+public class CarConditionalRequestIntegrationTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    CarService carService;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    CarDao carDao;
+
+    @Autowired
+    CarChangeDao carChangeDao;
+
+    @Autowired
+    CarChangeRelay carChangeRelay;
+
+    @Autowired
+    CarCatalog carCatalog;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    Statistics statistics;
+
+    @Before
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    public void findByIdWithMatchingETagShouldReturn304WithoutQueries() throws Exception{
+        Car car = new Car("Skoda", "Octavia", 2018, 14000);
+        carService.insert(car);
+
+        String etag = mockMvc.perform(get("/cars/" + car.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ETAG, "\"" + car.getId() + ".0\""))
+                .andExpect(header().exists(LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(ETAG);
+
+        long statements = statistics.getPrepareStatementCount();
+        mockMvc.perform(get("/cars/" + car.getId()).header(IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        Assert.assertEquals(statements, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    public void findByIdAfterPatchShouldReturnTheCarWithANewETag() throws Exception{
+        Car car = new Car("Skoda", "Superb", 2019, 24000);
+        carService.insert(car);
+        String etag = mockMvc.perform(get("/cars/" + car.getId()))
+                .andReturn().getResponse().getHeader(ETAG);
+
+        CarPatch patch = new CarPatch();
+        patch.setPrice(23000);
+        carService.patch(car.getId(), patch);
+
+        String lastModified = mockMvc.perform(get("/cars/" + car.getId()).header(IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ETAG, "\"" + car.getId() + ".1\""))
+                .andReturn().getResponse().getHeader(LAST_MODIFIED);
+        mockMvc.perform(get("/cars/" + car.getId()).header(IF_MODIFIED_SINCE, lastModified))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    public void findByIdShouldNotReturn304OnceAnotherInstanceChangedTheCar() throws Exception{
+        Car car = new Car("Skoda", "Karoq", 2019, 22000);
+        carService.insert(car);
+        String etag = mockMvc.perform(get("/cars/" + car.getId()))
+                .andReturn().getResponse().getHeader(ETAG);
+
+        // what another instance's update leaves behind: the row and its change, but no local event
+        Car edit = new Car("Skoda", "Karoq", 2019, 21000);
+        edit.setModifiedTime(LocalDateTime.now());
+        carDao.updateCar(car.getId(), edit);
+        Car committed = carDao.findById(car.getId()).get();
+        carChangeDao.save(new CarChange(CarChange.Type.SAVED, car.getId(), objectMapper.writeValueAsString(committed)));
+        carChangeRelay.relay();
+        carCatalog.sync();
+
+        mockMvc.perform(get("/cars/" + car.getId()).header(IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ETAG, "\"" + car.getId() + ".1\""));
+        Assert.assertEquals(21000, carCatalog.get(car.getId()).getPrice());
+    }
+
+    @Test
+    public void findAllShouldReturn304UntilACarOnThePageChanges() throws Exception{
+        Car car = new Car("Skoda", "Fabia", 2015, 7000);
+        carService.insert(car);
+        carService.insert(new Car("Skoda", "Kodiaq", 2020, 31000));
+        String page = "/cars?size=2&cursor=" + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(car.getId() - 1).getBytes(StandardCharsets.UTF_8));
+
+        String etag = mockMvc.perform(get(page))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(ETAG))
+                .andReturn().getResponse().getHeader(ETAG);
+
+        long statements = statistics.getPrepareStatementCount();
+        mockMvc.perform(get(page).header(IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        Assert.assertEquals(statements, statistics.getPrepareStatementCount());
+
+        CarPatch patch = new CarPatch();
+        patch.setPrice(6500);
+        carService.patch(car.getId(), patch);
+
+        mockMvc.perform(get(page).header(IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void updateWithIfMatchShouldOnlyApplyToThatVersion() throws Exception{
+        Car car = new Car("Skoda", "Scala", 2020, 17000);
+        carService.insert(car);
+        String etag = mockMvc.perform(get("/cars/" + car.getId()))
+                .andReturn().getResponse().getHeader(ETAG);
+        String edit = "{\"brand\":\"Skoda\",\"model\":\"Scala\",\"year\":2020,\"price\":16000}";
+
+        mockMvc.perform(put("/cars/" + car.getId()).header(IF_MATCH, etag).contentType(APPLICATION_JSON).content(edit))
+                .andExpect(status().isOk());
+        mockMvc.perform(put("/cars/" + car.getId()).header(IF_MATCH, etag).contentType(APPLICATION_JSON).content(edit))
+                .andExpect(status().isConflict());
+        mockMvc.perform(put("/cars/" + car.getId()).header(IF_MATCH, "\"" + (car.getId() + 1) + ".1\"")
+                .contentType(APPLICATION_JSON).content(edit))
+                .andExpect(status().isPreconditionFailed());
+
+        Assert.assertEquals(16000, carService.findById(car.getId()).getPrice());
+        Assert.assertEquals(Long.valueOf(1), carService.findById(car.getId()).getVersion());
+    }
+
+    @Test
+    public void writesWithoutAVersionShouldReturn428UnlessIfMatchIsAny() throws Exception{
+        Car car = new Car("Skoda", "Kamiq", 2020, 19000);
+        carService.insert(car);
+
+        mockMvc.perform(put("/cars/" + car.getId()).contentType(APPLICATION_JSON)
+                .content("{\"brand\":\"Skoda\",\"model\":\"Kamiq\",\"year\":2020,\"price\":18000}"))
+                .andExpect(status().isPreconditionRequired());
+        mockMvc.perform(patch("/cars/" + car.getId()).contentType(APPLICATION_JSON).content("{\"price\":18000}"))
+                .andExpect(status().isPreconditionRequired());
+        Assert.assertEquals(19000, carService.findById(car.getId()).getPrice());
+
+        mockMvc.perform(patch("/cars/" + car.getId()).header(IF_MATCH, "*").contentType(APPLICATION_JSON).content("{\"price\":18000}"))
+                .andExpect(status().isOk());
+        Assert.assertEquals(18000, carService.findById(car.getId()).getPrice());
+    }
+}
@@ -2,19 +2,32 @@ package com.restapi.carMarket.service;
 
 
 import com.restapi.carMarket.api.CarController;
+import com.restapi.carMarket.exceptions.CarVersionConflictException;
 import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarBatchResult;
+import com.restapi.carMarket.model.CarPage;
+import com.restapi.carMarket.model.CarSearch;
+import com.restapi.carMarket.model.CarStats;
+import com.restapi.carMarket.model.CarView;
 import net.minidev.json.JSONObject;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 
 import static org.hamcrest.collection.IsCollectionWithSize.hasSize;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -41,33 +54,80 @@ public class CarControllerUnitTest {
     @Test
     public void findCarsMustReturnAListOfCars() throws Exception {
 
-        List<Car> cars = new ArrayList<Car>();
-        cars.add(new Car("Porsche", "Panamera", 2017, 75000));
-        cars.add(new Car("BMW", "3 Series", 2019, 50000));
+        List<CarView> cars = new ArrayList<CarView>();
+        cars.add(CarView.of(new Car("Porsche", "Panamera", 2017, 75000)));
+        cars.add(CarView.of(new Car("BMW", "3 Series", 2019, 50000)));
 
-        given(carController.findAll())
-                .willReturn(cars);
+        given(carController.findAll(isNull(), isNull(), any()))
+                .willReturn(ResponseEntity.ok(new CarPage(cars, null)));
 
         mockMvc.perform(get("/cars")
                 .contentType(APPLICATION_JSON))
                 .andExpect(status().isOk()).andDo(print())
-                .andExpect(jsonPath("$", hasSize(2)))
-                .andExpect(jsonPath("$[0].brand", is(cars.get(0).getBrand())))
-                .andExpect(jsonPath("$[0].model", is(cars.get(0).getModel())))
-                .andExpect(jsonPath("$[0].year", is(cars.get(0).getYear())))
-                .andExpect(jsonPath("$[0].price", is(cars.get(0).getPrice())))
-                .andExpect(jsonPath("$[1].brand", is(cars.get(1).getBrand())))
-                .andExpect(jsonPath("$[1].model", is(cars.get(1).getModel())))
-                .andExpect(jsonPath("$[1].year", is(cars.get(1).getYear())))
-                .andExpect(jsonPath("$[1].price", is(cars.get(1).getPrice())));
+                .andExpect(jsonPath("$.cars", hasSize(2)))
+                .andExpect(jsonPath("$.cars[0].brand", is(cars.get(0).getBrand())))
+                .andExpect(jsonPath("$.cars[0].model", is(cars.get(0).getModel())))
+                .andExpect(jsonPath("$.cars[0].year", is(cars.get(0).getYear())))
+                .andExpect(jsonPath("$.cars[0].price", is(cars.get(0).getPrice())))
+                .andExpect(jsonPath("$.cars[1].brand", is(cars.get(1).getBrand())))
+                .andExpect(jsonPath("$.cars[1].model", is(cars.get(1).getModel())))
+                .andExpect(jsonPath("$.cars[1].year", is(cars.get(1).getYear())))
+                .andExpect(jsonPath("$.cars[1].price", is(cars.get(1).getPrice())));
+
+    }
+
+    @Test
+    public void findCarsWithCursorMustReturnTheNextPage() throws Exception {
+
+        List<CarView> cars = new ArrayList<CarView>();
+        cars.add(CarView.of(new Car("Porsche", "Panamera", 2017, 75000)));
+
+        given(carController.findAll(eq("MTA"), eq(1), any()))
+                .willReturn(ResponseEntity.ok(new CarPage(cars, "MTE")));
 
+        mockMvc.perform(get("/cars?cursor=MTA&size=1")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk()).andDo(print())
+                .andExpect(jsonPath("$.cars", hasSize(1)))
+                .andExpect(jsonPath("$.nextCursor", is("MTE")));
+    }
+
+    @Test
+    public void searchMustReturnAPageOfCars() throws Exception {
+
+        List<CarView> cars = new ArrayList<CarView>();
+        cars.add(CarView.of(new Car("BMW", "3 Series", 2017, 25000)));
+
+        given(carController.search(any(CarSearch.class), isNull(), eq(20)))
+                .willReturn(new CarPage(cars, null));
+
+        mockMvc.perform(get("/cars/search?brand=BMW&model=3 Series&minYear=2015&maxYear=2019&maxPrice=30000&sort=price&size=20")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk()).andDo(print())
+                .andExpect(jsonPath("$.cars", hasSize(1)))
+                .andExpect(jsonPath("$.cars[0].model", is("3 Series")));
+    }
+
+    @Test
+    public void statsMustReturnAggregatesPerBrandModelAndYear() throws Exception {
+        List<CarStats> stats = new ArrayList<>();
+        stats.add(new CarStats("BMW", "3 Series", 2017, 12, 25000, 18000, 31000, null));
+
+        given(carController.stats(eq("BMW"), isNull(), isNull(), anyList())).willReturn(stats);
+
+        mockMvc.perform(get("/cars/stats?brand=BMW")
+                .accept(APPLICATION_JSON))
+                .andExpect(status().isOk()).andDo(print())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].count", is(12)))
+                .andExpect(jsonPath("$[0].minPrice", is(18000)));
     }
 
     @Test
     public void findByIdMustReturnACarObject() throws Exception {
         Car car = new Car("Porsche", "Panamera", 2017, 75000);
         car.setId(Long.valueOf(1));
-        given(carController.findById(car.getId())).willReturn(car);
+        given(carController.findById(eq(car.getId()), any())).willReturn(ResponseEntity.ok(car));
 
         mockMvc.perform(get("/cars/" + car.getId())
                 .contentType(APPLICATION_JSON))
@@ -86,12 +146,31 @@ public class CarControllerUnitTest {
         car.put("year", 2017);
         car.put("price", 70000);
 
+        given(carController.insert(any(Car.class))).willReturn(ResponseEntity.status(HttpStatus.CREATED).build());
         mockMvc.perform(post("/cars")
                 .contentType(APPLICATION_JSON)
                 .content(car.toJSONString()))
                 .andExpect(status().isCreated()).andDo(print());
     }
 
+    @Test
+    public void batchInsertShouldReturnAResultPerRow() throws Exception {
+        List<CarBatchResult> results = new ArrayList<>();
+        results.add(new CarBatchResult(0, 1L, CarBatchResult.Status.CREATED));
+        results.add(CarBatchResult.invalid(1));
+
+        given(carController.insertAll(anyList())).willReturn(results);
+
+        mockMvc.perform(post("/cars/batch")
+                .contentType(APPLICATION_JSON)
+                .content("[{\"brand\":\"Porsche\",\"model\":\"Panamera\",\"year\":2017,\"price\":70000}," +
+                        "{\"brand\":\"Porsche\",\"model\":\"Panamera\",\"year\":0,\"price\":70000}]"))
+                .andExpect(status().isOk()).andDo(print())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].status", is("CREATED")))
+                .andExpect(jsonPath("$[1].status", is("INVALID")));
+    }
+
     @Test
     public void deleteByIdShouldReturnCode204() throws Exception{
         mockMvc.perform(delete("/cars/"+Long.valueOf(1))
@@ -99,6 +178,13 @@ public class CarControllerUnitTest {
                 .andExpect(status().isNoContent()).andDo(print());
     }
 
+    @Test
+    public void deleteAllByIdShouldReturnCode204() throws Exception{
+        mockMvc.perform(delete("/cars?ids=1,2,3")
+                .contentType(APPLICATION_JSON))
+                .andExpect(status().isNoContent()).andDo(print());
+    }
+
     @Test
     public void deleteShouldReturnStatusCode204() throws Exception{
         JSONObject car = new JSONObject();
@@ -126,4 +212,32 @@ public class CarControllerUnitTest {
                 .content(car.toJSONString()))
                 .andExpect(status().isOk()).andDo(print());
     }
+
+    @Test
+    public void updateWithStaleVersionShouldReturnCode409() throws Exception{
+        JSONObject car = new JSONObject();
+        car.put("brand", "Porsche");
+        car.put("model", "Panamera");
+        car.put("year", 2017);
+        car.put("price", 70000);
+        car.put("version", 1);
+
+        willThrow(new CarVersionConflictException()).given(carController).update(eq(1L), any(Car.class), any());
+
+        mockMvc.perform(put("/cars/"+Long.valueOf(1))
+                .contentType(APPLICATION_JSON)
+                .content(car.toJSONString()))
+                .andExpect(status().isConflict()).andDo(print());
+    }
+
+    @Test
+    public void patchShouldReturnCode200() throws Exception{
+        JSONObject patch = new JSONObject();
+        patch.put("price", 65000);
+
+        mockMvc.perform(patch("/cars/"+Long.valueOf(1))
+                .contentType(APPLICATION_JSON)
+                .content(patch.toJSONString()))
+                .andExpect(status().isOk()).andDo(print());
+    }
 }
@@ -0,0 +1,224 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarExportRow;
+import com.restapi.carMarket.model.CarPatch;
+import com.restapi.carMarket.model.CarSearch;
+import com.restapi.carMarket.model.CarView;
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@RunWith(SpringRunner.class)
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+        "com.restapi.carMarket.service.CarDaoIntegrationTest$StatementCapture")
+public class CarDaoIntegrationTest {
+    @Autowired
+    TestEntityManager testEntityManager;
+
+    @Autowired
+    CarDao carDao;
+
+    @Before
+    public void insertCars() {
+        String[][] models = {{"BMW", "3 Series"}, {"BMW", "5 Series"}, {"Porsche", "Panamera"}, {"Audi", "A4"}};
+        for(int i = 0; i < 400; i++) {
+            String[] model = models[i % models.length];
+            testEntityManager.persist(new Car(model[0], model[1], 2005 + i % 15, 10000 + (i * 137) % 60000));
+        }
+        testEntityManager.flush();
+    }
+
+    @Test
+    public void searchShouldOnlyReturnMatchingCarsInPriceOrder() {
+        CarSearch search = new CarSearch("BMW", "3 Series");
+        search.setMinYear(2015);
+        search.setMaxYear(2019);
+        search.setMaxPrice(30000);
+        search.setSort("price");
+
+        List<CarView> cars = carDao.search(search, null, null, 1000);
+
+        Assert.assertFalse(cars.isEmpty());
+        for(int i = 0; i < cars.size(); i++) {
+            CarView car = cars.get(i);
+            Assert.assertEquals("3 Series", car.getModel());
+            Assert.assertTrue(car.getYear() >= 2015 && car.getYear() <= 2019);
+            Assert.assertTrue(car.getPrice() <= 30000);
+            if(i > 0)
+                Assert.assertTrue(cars.get(i - 1).getPrice() <= car.getPrice());
+        }
+    }
+
+    @Test
+    public void searchAfterKeyShouldContinueWhereThePreviousPageStopped() {
+        CarSearch search = new CarSearch("Porsche", "Panamera");
+        search.setSort("year");
+        search.setOrder("desc");
+
+        List<CarView> all = carDao.search(search, null, null, 1000);
+        List<CarView> firstPage = carDao.search(search, null, null, 10);
+        CarView last = firstPage.get(9);
+        List<CarView> secondPage = carDao.search(search, last.getYear(), last.getId(), 10);
+
+        Assert.assertEquals(all.subList(0, 10), firstPage);
+        Assert.assertEquals(all.subList(10, 20).stream().map(CarView::getId).collect(Collectors.toList()),
+                secondPage.stream().map(CarView::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void brandModelYearSearchShouldUseCompositeIndex() {
+        CarSearch search = new CarSearch("BMW", "3 Series");
+        search.setMinYear(2015);
+        search.setMaxYear(2019);
+        search.setMaxPrice(30000);
+        search.setSort("year");
+
+        String plan = explain(searchSql(search));
+
+        Assert.assertTrue(plan, plan.contains("IDX_CAR_BRAND_MODEL_YEAR_PRICE"));
+    }
+
+    @Test
+    public void brandModelPriceSearchShouldUseCompositeIndex() {
+        CarSearch search = new CarSearch("BMW", "3 Series");
+        search.setMinPrice(10000);
+        search.setMaxPrice(30000);
+        search.setSort("price");
+
+        String plan = explain(searchSql(search));
+
+        Assert.assertTrue(plan, plan.contains("IDX_CAR_BRAND_MODEL_PRICE"));
+    }
+
+    @Test
+    public void carIdsShouldComeFromPooledSequence() {
+        Number increment = (Number) testEntityManager.getEntityManager().createNativeQuery(
+                "SELECT increment FROM information_schema.sequences WHERE sequence_name = 'CAR_SEQ'").getSingleResult();
+
+        Assert.assertEquals(50, increment.intValue());
+        Assert.assertEquals(400, carDao.findAll().stream().map(Car::getId).distinct().count());
+    }
+
+    @Test
+    public void deleteCarsByIdInShouldReturnNumberOfDeletedRows() {
+        List<Car> cars = carDao.findAll();
+
+        int deleted = carDao.deleteCarsByIdIn(Arrays.asList(cars.get(0).getId(), cars.get(1).getId(), -1L));
+
+        Assert.assertEquals(2, deleted);
+        Assert.assertEquals(398, carDao.count());
+    }
+
+    @Test
+    public void deleteCarMatchingShouldOnlyDeleteTheCarWithThatId() {
+        Car car = carDao.findAll().get(0);
+        Car copy = new Car(car.getBrand(), car.getModel(), car.getYear(), car.getPrice());
+
+        Assert.assertEquals(1, carDao.deleteCarMatching(car.getId(), copy));
+        Assert.assertEquals(0, carDao.deleteCarMatching(car.getId(), copy));
+        Assert.assertEquals(0, carDao.deleteCarById(car.getId()));
+    }
+
+    @Test
+    public void versionedUpdateShouldOnlyApplyToTheCurrentVersion() {
+        Car car = carDao.findAll().get(0);
+        Car edit = new Car("BMW", "M3", 2018, 55000);
+        edit.setVersion(car.getVersion());
+
+        Assert.assertEquals(1, carDao.updateCarWithVersion(car.getId(), edit));
+        Assert.assertEquals(0, carDao.updateCarWithVersion(car.getId(), edit));
+
+        testEntityManager.clear();
+        Car updated = carDao.findById(car.getId()).get();
+        Assert.assertEquals("M3", updated.getModel());
+        Assert.assertEquals(car.getVersion() + 1, (long) updated.getVersion());
+    }
+
+    @Test
+    public void patchShouldOnlyChangeTheGivenFields() {
+        Car car = carDao.findAll().get(0);
+        CarPatch patch = new CarPatch();
+        patch.setPrice(12345);
+        patch.setVersion(car.getVersion());
+
+        Assert.assertEquals(1, carDao.patch(car.getId(), patch, LocalDateTime.now()));
+        Assert.assertEquals(0, carDao.patch(car.getId(), patch, LocalDateTime.now()));
+
+        testEntityManager.clear();
+        Car patched = carDao.findById(car.getId()).get();
+        Assert.assertEquals(12345, patched.getPrice());
+        Assert.assertEquals(car.getModel(), patched.getModel());
+        Assert.assertEquals(car.getYear(), patched.getYear());
+    }
+
+    private String searchSql(CarSearch search) {
+        StatementCapture.statements.clear();
+        carDao.search(search, null, null, 10);
+        Assert.assertEquals(1, StatementCapture.statements.size());
+        return StatementCapture.statements.get(0);
+    }
+
+    // the parameters stay unbound, which H2 plans like any other value
+    private String explain(String sql) {
+        testEntityManager.getEntityManager().createNativeQuery("ANALYZE").executeUpdate();
+        return testEntityManager.getEntityManager().unwrap(Session.class).doReturningWork(connection -> {
+            try(PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql);
+                ResultSet plan = statement.executeQuery()) {
+                plan.next();
+                return plan.getString(1);
+            }
+        });
+    }
+
+    /**
+     * Records the SQL Hibernate generates, so the plans are checked for the queries the DAOs actually run.
+     */
+    public static class StatementCapture implements StatementInspector {
+        static final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+
+    @Test
+    public void exportSinceShouldOnlyStreamCarsModifiedAtOrAfterThatTime() {
+        LocalDateTime since = LocalDateTime.now().plusHours(1);
+        Car car = carDao.findAll().get(7);
+        CarPatch patch = new CarPatch();
+        patch.setPrice(4321);
+        carDao.patch(car.getId(), patch, since.plusSeconds(1));
+
+        List<CarExportRow> rows;
+        try(Stream<CarExportRow> stream = carDao.streamExportModifiedSince(since)) {
+            rows = stream.collect(Collectors.toList());
+        }
+        Assert.assertEquals(1, rows.size());
+        Assert.assertEquals((long) car.getId(), rows.get(0).getId());
+        Assert.assertEquals(4321, rows.get(0).getPrice());
+
+        try(Stream<CarExportRow> stream = carDao.streamExport()) {
+            Assert.assertTrue(stream.count() >= 400);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.api.CarColumnarReader;
+import com.restapi.carMarket.api.CarColumnarWriter;
+import com.restapi.carMarket.api.CarCsvWriter;
+import com.restapi.carMarket.api.CarExportWriter;
+import com.restapi.carMarket.model.CarExportRow;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+public class CarExportWriterTest {
+    private static final LocalDateTime POSTED = LocalDateTime.of(2019, 12, 24, 18, 30, 5);
+
+    @Test
+    public void csvShouldQuoteTextWithSeparatorsAndLeaveMissingTimesEmpty() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CarExportWriter writer = new CarCsvWriter(out, false);
+        writer.write(new CarExportRow(1, "Mercedes-Benz", "E 350 \"AMG\", Coupe", 2017, 45000, POSTED, null));
+        writer.finish();
+
+        Assert.assertEquals(CarCsvWriter.HEADER + "\r\n"
+                        + "1,Mercedes-Benz,\"E 350 \"\"AMG\"\", Coupe\",2017,45000,2019-12-24 18:30:05,\r\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void gzippedCsvShouldDecompressToTheSameLines() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CarExportWriter writer = new CarCsvWriter(out, true);
+        writer.write(new CarExportRow(1, "BMW", "3 Series", 2017, 25000, POSTED, POSTED));
+        writer.finish();
+
+        String csv = new String(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())).readAllBytes(),
+                StandardCharsets.UTF_8);
+        Assert.assertEquals(CarCsvWriter.HEADER + "\r\n"
+                + "1,BMW,3 Series,2017,25000,2019-12-24 18:30:05,2019-12-24 18:30:05\r\n", csv);
+    }
+
+    @Test
+    public void columnarExportShouldRoundTripAcrossBatches() throws IOException {
+        String[][] models = {{"BMW", "3 Series"}, {"Porsche", "Panamera"}, {"Škoda", "Octavia"}};
+        List<CarExportRow> rows = new ArrayList<>();
+        for(int i = 0; i < CarColumnarWriter.BATCH_SIZE * 2 + 17; i++) {
+            String[] model = models[i % models.length];
+            rows.add(new CarExportRow(1000 + i * 3 - (i % 5), model[0], model[1], 2000 + i % 20, 5000 + i,
+                    POSTED.plusMinutes(i), i % 4 == 0 ? null : POSTED.plusDays(i)));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CarExportWriter writer = new CarColumnarWriter(out);
+        for(CarExportRow row : rows)
+            writer.write(row);
+        writer.finish();
+
+        List<CarExportRow> read = new ArrayList<>();
+        CarColumnarReader.read(new ByteArrayInputStream(out.toByteArray()), read::add);
+
+        Assert.assertEquals(rows.size(), read.size());
+        for(int i = 0; i < rows.size(); i++) {
+            Assert.assertEquals(rows.get(i).getId(), read.get(i).getId());
+            Assert.assertEquals(rows.get(i).getBrand(), read.get(i).getBrand());
+            Assert.assertEquals(rows.get(i).getModel(), read.get(i).getModel());
+            Assert.assertEquals(rows.get(i).getYear(), read.get(i).getYear());
+            Assert.assertEquals(rows.get(i).getPrice(), read.get(i).getPrice());
+            Assert.assertEquals(rows.get(i).getPostTime(), read.get(i).getPostTime());
+            Assert.assertEquals(rows.get(i).getModifiedTime(), read.get(i).getModifiedTime());
+        }
+        Assert.assertTrue(out.size() < rows.size() * 16);
+    }
+}
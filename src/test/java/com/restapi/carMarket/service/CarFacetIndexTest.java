@@ -0,0 +1,66 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.CarFacets;
+import com.restapi.carMarket.model.CarSnapshot;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class CarFacetIndexTest {
+    private final CarFacetIndex carFacetIndex = new CarFacetIndex();
+
+    @Before
+    public void setUp() {
+        carFacetIndex.yearBucket = 5;
+        carFacetIndex.priceBands = new int[] {10000, 20000, 50000};
+    }
+
+    @Test
+    public void countsOfAFacetShouldIgnoreItsOwnSelection() {
+        carFacetIndex.onChange(null, new CarSnapshot(1, "BMW", "3 Series", 2017, 25000, null));
+        carFacetIndex.onChange(null, new CarSnapshot(2, "BMW", "3 Series", 2012, 15000, null));
+        carFacetIndex.onChange(null, new CarSnapshot(3, "BMW", "X5", 2019, 60000, null));
+        carFacetIndex.onChange(null, new CarSnapshot(4, "Audi", "A4", 2018, 27000, null));
+        carFacetIndex.onChange(null, new CarSnapshot(5, "Audi", "A4", 2009, 8000, null));
+
+        CarFacets facets = carFacetIndex.facets(List.of("BMW"), null, List.of("2015-2019"), null);
+
+        Assert.assertEquals(2, facets.getTotal());
+        Assert.assertEquals(Map.of("BMW", 2L, "Audi", 1L), facets.getBrand());
+        Assert.assertEquals(Map.of("3 Series", 1L, "X5", 1L), facets.getModel());
+        Assert.assertEquals(Map.of("2010-2014", 1L, "2015-2019", 2L), facets.getYear());
+        Assert.assertEquals(Arrays.asList("20000-49999", "50000+"), List.copyOf(facets.getPrice().keySet()));
+
+        facets = carFacetIndex.facets(List.of("BMW", "Audi"), null, null, List.of("0-9999", "20000-49999"));
+
+        Assert.assertEquals(3, facets.getTotal());
+        Assert.assertEquals(Arrays.asList("0-9999", "10000-19999", "20000-49999", "50000+"),
+                List.copyOf(facets.getPrice().keySet()));
+    }
+
+    @Test
+    public void updateAndDeleteShouldMoveCarsAndReuseOrdinals() {
+        CarSnapshot car = new CarSnapshot(1, "Audi", "A4", 2016, 15000, null);
+        CarSnapshot updated = new CarSnapshot(1, "Audi", "A6", 2016, 32000, null);
+
+        carFacetIndex.onChange(null, car);
+        carFacetIndex.onChange(car, updated);
+
+        CarFacets facets = carFacetIndex.facets(null, null, null, null);
+        Assert.assertEquals(Map.of("A6", 1L), facets.getModel());
+        Assert.assertEquals(Map.of("20000-49999", 1L), facets.getPrice());
+
+        carFacetIndex.onChange(updated, null);
+        carFacetIndex.onChange(null, new CarSnapshot(2, "Kia", "Ceed", 2020, 18000, null));
+
+        facets = carFacetIndex.facets(null, null, null, null);
+        Assert.assertEquals(1, facets.getTotal());
+        Assert.assertEquals(Map.of("Kia", 1L), facets.getBrand());
+        Assert.assertEquals(1, carFacetIndex.size());
+        Assert.assertTrue(carFacetIndex.facets(List.of("Audi"), null, null, null).getModel().isEmpty());
+    }
+}
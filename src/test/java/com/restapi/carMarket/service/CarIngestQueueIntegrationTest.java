@@ -0,0 +1,148 @@
+package com.restapi.carMarket.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.restapi.carMarket.CarMarketApplication;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarBatchResult;
+import com.restapi.carMarket.model.CarIngestTicket;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.mockito.BDDMockito.given;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CarMarketApplication.class, properties = {
+        "carmarket.ingest.enabled=true",
+        "carmarket.ingest.journal=target/ingest-test/ingest.journal",
+        // flushed by the tests themselves
+        "carmarket.ingest.flush-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+public class CarIngestQueueIntegrationTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    CarIngestQueue carIngestQueue;
+
+    @Autowired
+    CarService carService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void postShouldBeAcknowledgedAndWrittenByTheNextFlush() throws Exception {
+        String body = mockMvc.perform(post("/cars").contentType(APPLICATION_JSON)
+                .content("{\"brand\":\"Tesla\",\"model\":\"Model 3\",\"year\":2020,\"price\":41000}"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("status", is("QUEUED")))
+                .andReturn().getResponse().getContentAsString();
+        String ticket = objectMapper.readTree(body).get("ticket").asText();
+        mockMvc.perform(get("/cars/ingest/" + ticket)).andExpect(jsonPath("status", is("QUEUED")));
+
+        carIngestQueue.flush();
+
+        CarIngestTicket written = carIngestQueue.status(ticket);
+        Assert.assertEquals(CarIngestTicket.Status.CREATED, written.getStatus());
+        Assert.assertEquals("Model 3", carService.findById(written.getId()).getModel());
+        Assert.assertEquals(0, carIngestQueue.size());
+        mockMvc.perform(get("/cars/ingest/unknown")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void openShouldRequeueAcceptedCarsThatWereNeverWritten() throws Exception {
+        Path journal = folder.getRoot().toPath().resolve("ingest.journal");
+        Files.write(journal, List.of(
+                "{\"ticket\":\"t1\",\"car\":{\"brand\":\"Kia\",\"model\":\"Ceed\",\"year\":2019,\"price\":17000}}",
+                "{\"ticket\":\"t2\",\"car\":{\"brand\":\"Kia\",\"model\":\"Sportage\",\"year\":2021,\"price\":29000}}",
+                "{\"written\":[\"t1\"]}",
+                "{\"ticket\":\"t3\",\"car\":{\"brand\":\"Ki"), StandardCharsets.UTF_8);
+
+        CarIngestQueue queue = queue(journal, 10);
+        queue.open();
+        Assert.assertEquals(1, queue.size());
+        Assert.assertNull(queue.status("t1"));
+
+        queue.flush();
+        CarIngestTicket replayed = queue.status("t2");
+        Assert.assertEquals(CarIngestTicket.Status.CREATED, replayed.getStatus());
+        Assert.assertEquals("Sportage", carService.findById(replayed.getId()).getModel());
+        Assert.assertEquals(0, Files.size(journal));
+        queue.close();
+    }
+
+    @Test
+    public void fullQueueShouldRefuseCarsUntilFlushed() throws Exception {
+        CarIngestQueue queue = queue(folder.getRoot().toPath().resolve("ingest.journal"), 1);
+        queue.open();
+
+        Assert.assertNotNull(queue.offer(new Car("Mazda", "CX-5", 2020, 27000)));
+        Assert.assertNull(queue.offer(new Car("Mazda", "CX-30", 2021, 25000)));
+        queue.flush();
+        Assert.assertNotNull(queue.offer(new Car("Mazda", "CX-30", 2021, 25000)));
+        queue.close();
+    }
+
+    @Test
+    public void carsShouldStayQueuedWhileTheDatabaseIsUnavailable() throws Exception {
+        Path journal = folder.getRoot().toPath().resolve("ingest.journal");
+        Files.write(journal, List.of(
+                "{\"ticket\":\"t1\",\"car\":{\"brand\":\"Opel\",\"model\":\"Astra\",\"year\":2017,\"price\":11000}}"),
+                StandardCharsets.UTF_8);
+        CarIngestQueue queue = queue(journal, 10);
+        queue.carService = Mockito.mock(CarService.class);
+        given(queue.carService.insertAll(ArgumentMatchers.anyList()))
+                .willThrow(new CannotCreateTransactionException("Could not open JPA EntityManager for transaction"))
+                .willReturn(List.of(new CarBatchResult(0, 42L, CarBatchResult.Status.CREATED)));
+        queue.open();
+
+        queue.flush();
+        Assert.assertEquals(CarIngestTicket.Status.QUEUED, queue.status("t1").getStatus());
+        Assert.assertEquals(1, queue.size());
+        Assert.assertFalse(new String(Files.readAllBytes(journal), StandardCharsets.UTF_8).contains("written"));
+
+        queue.flush();
+        Assert.assertEquals(CarIngestTicket.Status.CREATED, queue.status("t1").getStatus());
+        Assert.assertEquals(0, queue.size());
+        queue.close();
+    }
+
+    private CarIngestQueue queue(Path journal, int capacity) {
+        CarIngestQueue queue = new CarIngestQueue();
+        queue.carService = carService;
+        queue.objectMapper = objectMapper;
+        queue.capacity = capacity;
+        queue.batchSize = 10;
+        queue.journalPath = journal.toString();
+        queue.ticketTtl = 60;
+        return queue;
+    }
+}
@@ -0,0 +1,75 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.CarMarketApplication;
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.exceptions.CarNotValidException;
+import com.restapi.carMarket.model.Car;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.util.NestedServletException;
+
+import static org.hamcrest.core.StringContains.containsString;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CarMarketApplication.class)
+@AutoConfigureMockMvc
+public class CarMetricsIntegrationTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @Autowired
+    CarDao carDao;
+
+    @Test
+    public void daoCallsShouldBeTimedPerMethod() throws Exception{
+        Car car = carDao.save(new Car("BMW","5 Series", 2017, 40000));
+
+        mockMvc.perform(get("/cars/" + car.getId())).andExpect(status().isOk());
+
+        Assert.assertTrue(registry.get("cars.dao").tag("repository", "CarDao").tag("method", "findById")
+                .timer().count() >= 1);
+    }
+
+    @Test
+    public void carExceptionsShouldBeCounted() throws Exception{
+        mockMvc.perform(get("/cars/-1")).andExpect(status().isNotFound());
+        try {
+            mockMvc.perform(post("/cars").contentType(APPLICATION_JSON)
+                    .content("{\"brand\":\"BMW\",\"model\":\"5 Series\",\"year\":1700,\"price\":40000}"));
+        } catch (NestedServletException e) {
+            Assert.assertTrue(e.getCause() instanceof CarNotValidException);
+        }
+
+        Assert.assertTrue(registry.get("cars.exceptions").tag("exception", "CarNotFoundException")
+                .counter().count() >= 1);
+        Assert.assertTrue(registry.get("cars.exceptions").tag("exception", "CarNotValidException")
+                .counter().count() >= 1);
+    }
+
+    @Test
+    public void prometheusEndpointShouldExposeRequestHistogramsAndPoolGauges() throws Exception{
+        mockMvc.perform(get("/cars")).andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(content().string(containsString("cars_dao_seconds_bucket")))
+                .andExpect(content().string(containsString("hikaricp_connections_active")))
+                .andExpect(content().string(containsString("hibernate_statements_total")));
+    }
+}
@@ -0,0 +1,100 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.CarMarketApplication;
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.model.Car;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CarMarketApplication.class)
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "carmarket.rate-limit.findById.permits-per-second=0.01",
+        "carmarket.rate-limit.findById.burst=2",
+        "carmarket.rate-limit.api-keys=scraper,someone-else",
+        "carmarket.rate-limit.delete.permits-per-second=0.01",
+        "carmarket.rate-limit.delete.burst=1"
+})
+public class CarRateLimitIntegrationTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    CarDao carDao;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @Test
+    public void clientOverItsLimitShouldGet429WhileOthersAreServed() throws Exception {
+        Car car = carDao.save(new Car("Skoda", "Octavia", 2016, 12000));
+        String url = "/cars/" + car.getId();
+        double rejected = rejected();
+
+        mockMvc.perform(get(url).header("X-API-Key", "scraper")).andExpect(status().isOk());
+        mockMvc.perform(get(url).header("X-API-Key", "scraper")).andExpect(status().isOk());
+        mockMvc.perform(get(url).header("X-API-Key", "scraper"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists("Retry-After"));
+
+        mockMvc.perform(get(url).header("X-API-Key", "someone-else")).andExpect(status().isOk());
+        mockMvc.perform(get(url)).andExpect(status().isOk());
+        mockMvc.perform(get("/cars")).andExpect(status().isOk());
+
+        Assert.assertEquals(rejected + 1, rejected(), 0.0);
+    }
+
+    @Test
+    public void unknownKeysShouldShareTheirAddressesBucket() throws Exception {
+        Car car = carDao.save(new Car("Skoda", "Fabia", 2014, 6000));
+        String url = "/cars/" + car.getId();
+        RequestPostProcessor address = request -> {
+            request.setRemoteAddr("10.0.0.7");
+            return request;
+        };
+
+        mockMvc.perform(get(url).header("X-API-Key", "made-up-1").with(address)).andExpect(status().isOk());
+        mockMvc.perform(get(url).header("X-API-Key", "made-up-2").with(address)).andExpect(status().isOk());
+        mockMvc.perform(get(url).header("X-API-Key", "made-up-3").with(address)).andExpect(status().isTooManyRequests());
+    }
+
+    @Test
+    public void deletesByBodyAndByIdShouldBeLimitedSeparately() throws Exception {
+        Car car = carDao.save(new Car("Skoda", "Rapid", 2015, 8000));
+        Car other = carDao.save(new Car("Skoda", "Yeti", 2013, 7000));
+        RequestPostProcessor address = request -> {
+            request.setRemoteAddr("10.0.0.8");
+            return request;
+        };
+        String body = "{\"brand\":\"Skoda\",\"model\":\"Rapid\",\"year\":2015,\"price\":8000}";
+
+        mockMvc.perform(delete("/cars").contentType(APPLICATION_JSON).content(body).with(address))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/cars").contentType(APPLICATION_JSON).content(body).with(address))
+                .andExpect(status().isTooManyRequests());
+        mockMvc.perform(delete("/cars/" + other.getId()).with(address)).andExpect(status().isNoContent());
+        Assert.assertFalse(carDao.existsById(car.getId()));
+    }
+
+    private double rejected() {
+        return registry.find("cars.rejected").tag("endpoint", "findById").tag("reason", "rate_limit").counters().stream()
+                .mapToDouble(Counter::count).sum();
+    }
+}
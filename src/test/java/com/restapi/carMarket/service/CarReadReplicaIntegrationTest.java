@@ -0,0 +1,169 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.CarMarketApplication;
+import com.restapi.carMarket.config.ReplicaRoutingDataSource;
+import com.restapi.carMarket.exceptions.CarNotFoundException;
+import com.restapi.carMarket.model.Car;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+
+/**
+ * Runs against two in-memory databases: the primary, whose schema Hibernate creates, and a replica
+ * that gets a copy of that schema but no replication, so every read shows which of the two it came from.
+ * A third replica url points at nothing and has to be skipped.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CarMarketApplication.class)
+@TestPropertySource(properties = {
+        "spring.datasource.url=" + CarReadReplicaIntegrationTest.PRIMARY_URL,
+        "carmarket.datasource.replica-urls=jdbc:h2:tcp://localhost:1/unreachable," + CarReadReplicaIntegrationTest.REPLICA_URL,
+        "carmarket.datasource.replica-check-interval-ms=3600000"
+})
+public class CarReadReplicaIntegrationTest {
+    static final String PRIMARY_URL = "jdbc:h2:mem:carmarket_primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:carmarket_replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    CarService carService;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    JdbcTemplate primary = new JdbcTemplate(new DriverManagerDataSource(PRIMARY_URL, "sa", ""));
+    JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @Before
+    public void copySchemaToReplica() {
+        if(replica.queryForObject("select count(*) from information_schema.tables where table_name = 'CAR'", Integer.class) == 0)
+            primary.queryForList("script nodata", String.class).forEach(replica::execute);
+    }
+
+    @After
+    public void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void readsShouldGoToHealthyReplica() {
+        replica.update("insert into car (id, brand, model, year, price, post_time, modified_time) " +
+                "values (1000000, 'Replica', 'Only', 2015, 1000, current_timestamp, current_timestamp)");
+
+        for(int i = 0; i < 4; i++)
+            Assert.assertThat(carService.findPage(null, 500).getCars().stream()
+                    .anyMatch(car -> car.getId() == 1000000L), is(true));
+        Assert.assertThat(carService.findAllById(List.of(1000000L)).get(0).getBrand(), is("Replica"));
+        Assert.assertThat(routing().healthyReplicas(), is(1));
+    }
+
+    @Test
+    public void cachedReadsShouldGoToPrimary() {
+        replica.update("insert into car (id, brand, model, year, price, post_time, modified_time) " +
+                "values (1000001, 'Replica', 'Only', 2015, 1000, current_timestamp, current_timestamp)");
+
+        try {
+            carService.findById(1000001L);
+            Assert.fail();
+        } catch (CarNotFoundException expected) {
+        }
+    }
+
+    @Test
+    public void connectionsWithCredentialsShouldBeRoutedLikeTheOthers() throws Exception {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(new DriverManagerDataSource(PRIMARY_URL),
+                List.of(new DriverManagerDataSource(REPLICA_URL)));
+        try(Connection connection = routing.getConnection("sa", "")) {
+            Assert.assertThat(connection.getMetaData().getURL(), is(PRIMARY_URL.substring(0, PRIMARY_URL.indexOf(';'))));
+        }
+    }
+
+    @Test
+    public void writesShouldGoToPrimary() {
+        Car car = new Car("Kia", "Ceed", 2019, 15000);
+        carService.insert(car);
+
+        Assert.assertThat(primary.queryForObject("select count(*) from car where id = ?", Integer.class, car.getId()), is(1));
+        Assert.assertThat(replica.queryForObject("select count(*) from car where id = ?", Integer.class, car.getId()), is(0));
+    }
+
+    @Test
+    public void readsAfterWriteShouldGoToReplicaOutsideRequest() {
+        // the test context binds a mock request to every test thread
+        RequestContextHolder.resetRequestAttributes();
+        Car car = new Car("Kia", "Rio", 2018, 11000);
+        carService.insert(car);
+        // the insert also put the car into the second-level cache, which would answer without any database
+        entityManagerFactory.getCache().evictAll();
+        Assert.assertThat(carService.findAllById(List.of(car.getId())).isEmpty(), is(true));
+    }
+
+    @Test
+    public void readsAfterWriteShouldGoToPrimaryWithinRequest() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        Car car = new Car("Kia", "Stonic", 2020, 17000);
+        carService.insert(car);
+        entityManagerFactory.getCache().evictAll();
+        Assert.assertThat(carService.findAllById(List.of(car.getId())).get(0).getModel(), is("Stonic"));
+    }
+
+    @Test
+    public void findByIdShouldReturnThePrimarysVersionWhileTheReplicaLags() {
+        RequestContextHolder.resetRequestAttributes();
+        Car car = new Car("Kia", "Sportage", 2019, 23000);
+        carService.insert(car);
+        // the replica has applied the insert but not yet the update that follows
+        replica.update("insert into car (id, brand, model, year, price, post_time, modified_time, version) " +
+                "values (?, 'Kia', 'Sportage', 2019, 23000, current_timestamp, current_timestamp, 0)", car.getId());
+        Car edit = new Car("Kia", "Sportage", 2019, 21000);
+        edit.setVersion(0L);
+        carService.update(car.getId(), edit);
+        // as a bulk update elsewhere leaves the region
+        entityManagerFactory.getCache().evict(Car.class);
+
+        Assert.assertThat(carService.findAllById(List.of(car.getId())).get(0).getPrice(), is(23000));
+        Assert.assertThat(entityManagerFactory.getCache().contains(Car.class, car.getId()), is(false));
+
+        Car found = carService.findById(car.getId());
+        Assert.assertThat(found.getPrice(), is(21000));
+        Assert.assertThat(found.getVersion(), is(1L));
+    }
+
+    @Test
+    public void replicaReadsShouldNotFillTheQueryCache() {
+        RequestContextHolder.resetRequestAttributes();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long puts = statistics.getQueryCachePutCount();
+
+        carService.findPage(null, 7);
+
+        Assert.assertThat(statistics.getQueryCachePutCount(), is(puts));
+    }
+
+    private ReplicaRoutingDataSource routing() {
+        return (ReplicaRoutingDataSource) ((LazyConnectionDataSourceProxy) dataSource).getTargetDataSource();
+    }
+}
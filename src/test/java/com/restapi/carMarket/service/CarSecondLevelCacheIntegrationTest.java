@@ -0,0 +1,107 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.CarMarketApplication;
+import com.restapi.carMarket.dao.CarDao;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarPage;
+import com.restapi.carMarket.model.CarPatch;
+import com.restapi.carMarket.model.CarSearch;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import javax.persistence.EntityManagerFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CarMarketApplication.class)
+public class CarSecondLevelCacheIntegrationTest {
+    @Autowired
+    CarService carService;
+
+    @Autowired
+    CarDao carDao;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    Statistics statistics;
+
+    @Before
+    public void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    public void findByIdInANewSessionShouldBeServedFromTheEntityCache() {
+        Car car = carDao.save(new Car("Mazda", "CX-5", 2018, 21000));
+        entityManagerFactory.getCache().evictAll();
+
+        long statements = statistics.getPrepareStatementCount();
+        carDao.findById(car.getId());
+        Assert.assertEquals(statements + 1, statistics.getPrepareStatementCount());
+
+        long hits = statistics.getSecondLevelCacheHitCount();
+        Assert.assertEquals("CX-5", carDao.findById(car.getId()).get().getModel());
+        Assert.assertEquals(statements + 1, statistics.getPrepareStatementCount());
+        Assert.assertEquals(hits + 1, statistics.getSecondLevelCacheHitCount());
+    }
+
+    @Test
+    public void repeatedListingAndSearchShouldBeServedFromTheQueryCacheUntilAWrite() {
+        Car car = new Car("Mazda", "MX-5", 2017, 19000);
+        carService.insert(car);
+        String cursor = cursorBefore(car.getId());
+        CarSearch search = new CarSearch("Mazda", "MX-5");
+        search.setSort("price");
+
+        carService.findPage(cursor, 10);
+        carService.search(search, null, 10);
+        long statements = statistics.getPrepareStatementCount();
+        long hits = statistics.getQueryCacheHitCount();
+        carService.findPage(cursor, 10);
+        carService.search(search, null, 10);
+        Assert.assertEquals(statements, statistics.getPrepareStatementCount());
+        Assert.assertEquals(hits + 2, statistics.getQueryCacheHitCount());
+
+        CarPatch patch = new CarPatch();
+        patch.setPrice(18500);
+        carService.patch(car.getId(), patch);
+        statements = statistics.getPrepareStatementCount();
+        CarPage page = carService.findPage(cursor, 10);
+        Assert.assertTrue(statistics.getPrepareStatementCount() > statements);
+        Assert.assertEquals(18500, page.getCars().get(0).getPrice());
+    }
+
+    @Test
+    public void multiGetShouldReadOnlyTheUncachedCarsInOneQuery() {
+        Car cached = carDao.save(new Car("Mazda", "CX-3", 2019, 18000));
+        Car first = carDao.save(new Car("Mazda", "CX-30", 2020, 24000));
+        Car second = carDao.save(new Car("Mazda", "CX-9", 2018, 33000));
+        entityManagerFactory.getCache().evictAll();
+        carDao.findById(cached.getId());
+
+        long statements = statistics.getPrepareStatementCount();
+        List<Car> cars = carService.findAllById(Arrays.asList(second.getId(), Long.MAX_VALUE, cached.getId(),
+                first.getId(), second.getId()));
+        Assert.assertEquals(statements + 1, statistics.getPrepareStatementCount());
+        Assert.assertEquals(Arrays.asList("CX-9", "CX-3", "CX-30"),
+                cars.stream().map(Car::getModel).collect(Collectors.toList()));
+    }
+
+    private static String cursorBefore(long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(id - 1).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -5,9 +5,19 @@ package com.restapi.carMarket.service;
 import com.restapi.carMarket.CarMarketApplication;
 import com.restapi.carMarket.dao.CarDao;
 import com.restapi.carMarket.exceptions.CarNotFoundException;
+import com.restapi.carMarket.exceptions.CarNotUniqueException;
 import com.restapi.carMarket.exceptions.CarNotValidException;
+import com.restapi.carMarket.exceptions.CarSearchNotValidException;
+import com.restapi.carMarket.exceptions.CarVersionConflictException;
+import com.restapi.carMarket.exceptions.CursorNotValidException;
 import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarBatchResult;
+import com.restapi.carMarket.model.CarPage;
+import com.restapi.carMarket.model.CarPatch;
+import com.restapi.carMarket.model.CarSearch;
+import com.restapi.carMarket.model.CarView;
 import org.junit.Assert;
+import org.junit.Before;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -17,9 +27,17 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.data.domain.Example;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.junit4.SpringRunner;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
 import static org.mockito.BDDMockito.given;
@@ -34,6 +52,22 @@ public class CarServiceUnitTest {
     @MockBean
     CarDao carDAO;
 
+    @Autowired
+    CacheManager cacheManager;
+
+    @Autowired
+    CarStatsIndex carStatsIndex;
+
+    @Before
+    public void clearCaches() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+    }
+
+    @Before
+    public void saveShouldReturnTheSavedCar() {
+        given(carDAO.save(ArgumentMatchers.any(Car.class))).willAnswer(invocation -> invocation.getArgument(0));
+    }
+
     @Test
     public void insertionOfValidCarShouldReturnTrue() throws Exception{
         Car car = new Car("BMW","5 Series", 2017, 40000);
@@ -42,6 +76,45 @@ public class CarServiceUnitTest {
 
     }
 
+    @Test
+    public void batchInsertionShouldSaveValidCarsAndReportInvalidOnes() throws Exception{
+        Car valid = new Car("BMW","5 Series", 2017, 40000);
+        Car invalidYear = new Car("BMW","5 Series", 0, 40000);
+        Car blankBrand = new Car("","5 Series", 2017, 40000);
+
+        List<CarBatchResult> results = carService.insertAll(Arrays.asList(valid, invalidYear, blankBrand));
+
+        Mockito.verify(carDAO,Mockito.times(1)).save(ArgumentMatchers.any(Car.class));
+        Mockito.verify(carDAO,Mockito.times(1)).save(valid);
+        Assert.assertEquals(CarBatchResult.Status.CREATED, results.get(0).getStatus());
+        Assert.assertEquals(CarBatchResult.Status.INVALID, results.get(1).getStatus());
+        Assert.assertEquals(CarBatchResult.Status.INVALID, results.get(2).getStatus());
+    }
+
+    @Test
+    public void writesShouldKeepMarketStatsUpToDate() throws Exception{
+        Car car = new Car("Lada","Niva", 2015, 4000);
+        car.setId(42L);
+        List<Double> median = Arrays.asList(0.5);
+
+        carService.insert(car);
+        Assert.assertEquals(1, carStatsIndex.summary("Lada", "Niva", null, median).getCount());
+
+        given(carDAO.updateCar(42L, car)).willReturn(1);
+        Car updated = new Car("Lada","Niva", 2016, 4000);
+        updated.setId(42L);
+        updated.setVersion(1L);
+        given(carDAO.findById(42L)).willReturn(Optional.of(updated));
+        car.setYear(2016);
+        carService.update(42L, car);
+        Assert.assertEquals(1, carStatsIndex.summary("Lada", "Niva", 2016, median).getCount());
+        Assert.assertEquals(0, carStatsIndex.summary("Lada", "Niva", 2015, median).getCount());
+
+        given(carDAO.deleteCarById(42L)).willReturn(1);
+        carService.deleteById(42L);
+        Assert.assertEquals(0, carStatsIndex.summary("Lada", null, null, median).getCount());
+    }
+
     @Test(expected = CarNotValidException.class)
     public void insertionOfCarWithYearLessThan1885ShouldThrowCarNotValidException() throws Exception{
         Car car = new Car("BMW","5 Series", 0, 40000);
@@ -76,80 +149,318 @@ public class CarServiceUnitTest {
         Mockito.verify(carDAO,Mockito.times(1)).findAll();
     }
 
+    @Test
+    public void findPageShouldFetchOneExtraRowAndReturnCursorOfLastCar() throws Exception{
+        Car first = new Car("BMW","5 Series", 2017, 40000);
+        first.setId(1L);
+        Car second = new Car("BMW","3 Series", 2018, 30000);
+        second.setId(2L);
+        Car third = new Car("Audi","A4", 2016, 20000);
+        third.setId(3L);
+
+        given(carDAO.findViewsByIdGreaterThan(0L, PageRequest.of(0, 3)))
+                .willReturn(new ArrayList<>(Arrays.asList(CarView.of(first), CarView.of(second), CarView.of(third))));
+        CarPage page = carService.findPage(null, 2);
+
+        Assert.assertEquals(2, page.getCars().size());
+        Assert.assertNotNull(page.getNextCursor());
+
+        given(carDAO.findViewsByIdGreaterThan(2L, PageRequest.of(0, 3)))
+                .willReturn(new ArrayList<>(Arrays.asList(CarView.of(third))));
+        CarPage next = carService.findPage(page.getNextCursor(), 2);
+
+        Assert.assertEquals(1, next.getCars().size());
+        Assert.assertNull(next.getNextCursor());
+    }
+
+    @Test(expected = CursorNotValidException.class)
+    public void findPageWithMalformedCursorShouldThrowCursorNotValidException() throws Exception{
+        carService.findPage("not a cursor", 10);
+    }
+
+    @Test(expected = CursorNotValidException.class)
+    public void searchWithPriceBeyondIntInCursorShouldThrowCursorNotValidException() throws Exception{
+        CarSearch search = new CarSearch("BMW", "3 Series");
+        search.setSort("price");
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(((1L << 32) + 20000 + ":7").getBytes(StandardCharsets.UTF_8));
+
+        carService.search(search, cursor, 2);
+    }
+
+    @Test
+    public void searchByPriceShouldReturnCursorWithPriceAndIdOfLastCar() throws Exception{
+        Car first = new Car("BMW","3 Series", 2017, 20000);
+        first.setId(7L);
+        Car second = new Car("BMW","3 Series", 2018, 25000);
+        second.setId(4L);
+        CarSearch search = new CarSearch("BMW", "3 Series");
+        search.setSort("price");
+
+        given(carDAO.search(search, null, null, 2)).willReturn(new ArrayList<>(Arrays.asList(CarView.of(first), CarView.of(second))));
+        CarPage page = carService.search(search, null, 1);
+
+        given(carDAO.search(search, 20000, 7L, 2)).willReturn(new ArrayList<>(Arrays.asList(CarView.of(second))));
+        CarPage next = carService.search(search, page.getNextCursor(), 1);
+
+        Assert.assertEquals(Arrays.asList(CarView.of(second)), next.getCars());
+        Assert.assertNull(next.getNextCursor());
+    }
+
+    @Test(expected = CarSearchNotValidException.class)
+    public void searchWithUnknownSortKeyShouldThrowCarSearchNotValidException() throws Exception{
+        CarSearch search = new CarSearch("BMW", "3 Series");
+        search.setSort("brand");
+
+        carService.search(search, null, 10);
+    }
+
+    @Test
+    public void streamAllShouldHandEveryCarToTheConsumer() throws Exception{
+        Car first = new Car("BMW","5 Series", 2017, 40000);
+        Car second = new Car("BMW","3 Series", 2018, 30000);
+        List<Car> streamed = new ArrayList<>();
+
+        given(carDAO.streamAll()).willReturn(Arrays.asList(first, second).stream());
+        carService.streamAll(streamed::add);
+
+        Assert.assertEquals(Arrays.asList(first, second), streamed);
+    }
+
     @Test
     public void findExistentCarByIdShouldReturnThisCar() throws Exception{
         Car car = new Car("BMW","5 Series", 2200, 40000);
-        Optional<Car> returnedCar = Optional.of(car);
         Long id = 10L;
 
-        given(carDAO.findById(id)).willReturn(returnedCar);
+        given(carDAO.multiLoad(List.of(id))).willReturn(List.of(car));
         Car newCar = carService.findById(id);
 
         Assert.assertTrue(newCar.equals(car));
-        Mockito.verify(carDAO,Mockito.times(1)).findById(id);
+        Mockito.verify(carDAO,Mockito.times(1)).multiLoad(List.of(id));
     }
 
     @Test(expected = CarNotFoundException.class)
     public void findNonExistentCarByIdShouldThrowCarNotFoundException() throws Exception{
-        Optional<Car> returnedCar = Optional.empty();
         Long id = 10L;
 
-        given(carDAO.findById(id)).willReturn(returnedCar);
+        given(carDAO.multiLoad(List.of(id))).willReturn(Collections.singletonList(null));
         carService.findById(id);
 
-        Mockito.verify(carDAO,Mockito.times(1)).findById(id);
+        Mockito.verify(carDAO,Mockito.times(1)).multiLoad(List.of(id));
     }
 
     @Test
-    public void deleteExistentCarByIdShouldCallDeleteByIdMethodOfDAO() throws Exception{
+    public void repeatedFindByIdShouldBeServedFromCache() throws Exception{
+        Car car = new Car("BMW","5 Series", 2017, 40000);
         Long id = 10L;
 
-        given(carDAO.existsById(id)).willReturn(true);
+        given(carDAO.multiLoad(List.of(id))).willReturn(List.of(car));
+        carService.findById(id);
+        Car cachedCar = carService.findById(id);
+
+        Assert.assertSame(car, cachedCar);
+        Mockito.verify(carDAO,Mockito.times(1)).multiLoad(List.of(id));
+    }
+
+    @Test
+    public void findByIdAfterUpdateShouldNotReturnStaleCar() throws Exception{
+        Car oldCar = new Car("BMW","5 Series", 2017, 40000);
+        Car updatedCar = new Car("BMW","5 Series", 2017, 35000);
+        Long id = 10L;
+
+        given(carDAO.multiLoad(List.of(id))).willReturn(List.of(oldCar));
+        carService.findById(id);
+        given(carDAO.updateCar(ArgumentMatchers.eq(id), ArgumentMatchers.any(Car.class))).willReturn(1);
+        given(carDAO.findById(id)).willReturn(Optional.of(updatedCar));
+        carService.update(id, new Car("BMW","5 Series", 2017, 35000));
+        given(carDAO.multiLoad(List.of(id))).willReturn(List.of(updatedCar));
+
+        Assert.assertSame(updatedCar, carService.findById(id));
+    }
+
+    @Test(expected = CarNotFoundException.class)
+    public void findByIdAfterDeleteByIdShouldThrowCarNotFoundException() throws Exception{
+        Car car = new Car("BMW","5 Series", 2017, 40000);
+        Long id = 10L;
+
+        given(carDAO.multiLoad(List.of(id))).willReturn(List.of(car));
+        carService.findById(id);
+        given(carDAO.deleteCarById(id)).willReturn(1);
         carService.deleteById(id);
+        given(carDAO.multiLoad(List.of(id))).willReturn(Collections.singletonList(null));
 
-        Mockito.verify(carDAO,Mockito.times(1)).deleteById(id);
+        carService.findById(id);
+    }
+
+    @Test(expected = CarNotFoundException.class)
+    public void findByIdAfterDeleteShouldThrowCarNotFoundException() throws Exception{
+        Car car = new Car("BMW","5 Series", 2017, 40000);
+        Long id = 10L;
+
+        given(carDAO.multiLoad(List.of(id))).willReturn(List.of(car));
+        carService.findById(id);
+        given(carDAO.findIdsMatchingPostedBetween(ArgumentMatchers.eq(car), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any())).willReturn(List.of(id));
+        given(carDAO.deleteCarMatching(id, car)).willReturn(1);
+        carService.delete(car);
+        given(carDAO.multiLoad(List.of(id))).willReturn(Collections.singletonList(null));
+
+        carService.findById(id);
+    }
+
+    @Test
+    public void deleteExistentCarByIdShouldIssueASingleDeleteQuery() throws Exception{
+        Long id = 10L;
+
+        given(carDAO.deleteCarById(id)).willReturn(1);
+        carService.deleteById(id);
+
+        Mockito.verify(carDAO,Mockito.times(1)).deleteCarById(id);
+        Mockito.verify(carDAO,Mockito.never()).existsById(id);
     }
 
     @Test(expected = CarNotFoundException.class)
     public void deleteNonExistentCarByIdShouldThrowCarNotFoundException() throws Exception{
         Long id = 10L;
 
-        given(carDAO.existsById(id)).willReturn(false);
+        given(carDAO.deleteCarById(id)).willReturn(0);
         carService.deleteById(id);
+    }
+
+    @Test
+    public void deleteExistentCarWithoutIdShouldDeleteItsOnlyMatch() throws Exception{
+        Car car = new Car("BMW","5 Series", 2010, 40000);
+        car.setPostTime(null);
+
+        given(carDAO.findIdsMatching(ArgumentMatchers.eq(car), ArgumentMatchers.any())).willReturn(List.of(10L));
+        given(carDAO.deleteCarMatching(10L, car)).willReturn(1);
+        carService.delete(car);
 
-        Mockito.verify(carDAO,Mockito.times(1)).deleteById(id);
+        Mockito.verify(carDAO,Mockito.times(1)).deleteCarMatching(10L, car);
     }
 
     @Test
-    public void deleteExistentCarShouldCallDeleteMethodOfDAO() throws Exception{
+    public void deleteCarWithoutIdMatchingSeveralShouldDeleteNothing() throws Exception{
         Car car = new Car("BMW","5 Series", 2010, 40000);
 
-        given(carDAO.exists(Example.of(car))).willReturn(true);
+        given(carDAO.findIdsMatchingPostedBetween(ArgumentMatchers.eq(car), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any())).willReturn(List.of(10L, 11L));
+        try {
+            carService.delete(car);
+            Assert.fail();
+        } catch (CarNotUniqueException expected) {
+        }
+
+        Mockito.verify(carDAO,Mockito.never()).deleteCarMatching(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    public void deleteExistentCarWithIdShouldOnlyDeleteThatCar() throws Exception{
+        Car car = new Car("BMW","5 Series", 2010, 40000);
+        car.setId(10L);
+
+        given(carDAO.deleteCarMatching(10L, car)).willReturn(1);
         carService.delete(car);
 
-        Mockito.verify(carDAO,Mockito.times(1)).delete(car);
+        Mockito.verify(carDAO,Mockito.times(1)).deleteCarMatching(10L, car);
+        Mockito.verify(carDAO,Mockito.never()).findIdsMatching(ArgumentMatchers.any(), ArgumentMatchers.any());
     }
 
     @Test(expected = CarNotFoundException.class)
     public void deleteNonExistentCarShouldThrowCarNotFoundException() throws Exception{
         Car car = new Car("BMW","5 Series", 2010, 40000);
 
-        given(carDAO.exists(Example.of(car))).willReturn(false);
+        given(carDAO.findIdsMatchingPostedBetween(ArgumentMatchers.eq(car), ArgumentMatchers.any(),
+                ArgumentMatchers.any(), ArgumentMatchers.any())).willReturn(List.of());
         carService.delete(car);
+    }
 
-        Mockito.verify(carDAO,Mockito.times(0)).delete(car);
+    @Test
+    public void deleteAllByIdShouldReturnNumberOfDeletedCars() throws Exception{
+        List<Long> ids = Arrays.asList(1L, 2L, 3L);
+
+        given(carDAO.deleteCarsByIdIn(ids)).willReturn(2);
+
+        Assert.assertEquals(2, carService.deleteAllById(ids));
+    }
+
+    @Test(expected = CarNotFoundException.class)
+    public void deleteAllByIdOfNonExistentCarsShouldThrowCarNotFoundException() throws Exception{
+        List<Long> ids = Arrays.asList(1L, 2L, 3L);
+
+        given(carDAO.deleteCarsByIdIn(ids)).willReturn(0);
+        carService.deleteAllById(ids);
     }
 
     @Test
     public void updateExistentCarWithValidCarShouldUpdateTheObject() throws Exception{
         Long id = 10L;
         Car newCar = new Car("BMW","7 Series", 2010, 10000);
-        Car oldCar = new Car("BMW","5 Series", 2010, 10000);
 
-        given(carDAO.findById(id)).willReturn(Optional.of(oldCar));
+        given(carDAO.updateCar(id, newCar)).willReturn(1);
+        given(carDAO.findById(id)).willReturn(Optional.of(newCar));
         carService.update(id, newCar);
 
-        Assert.assertTrue(newCar.equals(oldCar));
+        Mockito.verify(carDAO,Mockito.times(1)).updateCar(id, newCar);
+        Mockito.verify(carDAO,Mockito.never()).save(ArgumentMatchers.any(Car.class));
+        Mockito.verify(carDAO,Mockito.never()).existsById(id);
+    }
+
+    @Test
+    public void updateWithVersionShouldOnlyUpdateThatVersion() throws Exception{
+        Long id = 10L;
+        Car newCar = new Car("BMW","7 Series", 2010, 10000);
+        newCar.setVersion(3L);
+
+        given(carDAO.updateCarWithVersion(id, newCar)).willReturn(1);
+        given(carDAO.findById(id)).willReturn(Optional.of(newCar));
+        carService.update(id, newCar);
+
+        Mockito.verify(carDAO,Mockito.times(1)).updateCarWithVersion(id, newCar);
+        Mockito.verify(carDAO,Mockito.never()).updateCar(id, newCar);
+    }
+
+    @Test(expected = CarVersionConflictException.class)
+    public void updateWithStaleVersionShouldThrowCarVersionConflictException() throws Exception{
+        Long id = 10L;
+        Car newCar = new Car("BMW","7 Series", 2010, 10000);
+        newCar.setVersion(3L);
+
+        given(carDAO.updateCarWithVersion(id, newCar)).willReturn(0);
+        given(carDAO.existsById(id)).willReturn(true);
+        carService.update(id, newCar);
+    }
+
+    @Test
+    public void patchWithValidFieldsShouldIssueASinglePatchQuery() throws Exception{
+        Long id = 10L;
+        CarPatch patch = new CarPatch();
+        patch.setPrice(35000);
+
+        given(carDAO.patch(ArgumentMatchers.eq(id), ArgumentMatchers.eq(patch), ArgumentMatchers.any(LocalDateTime.class))).willReturn(1);
+        given(carDAO.findById(id)).willReturn(Optional.of(new Car("BMW","5 Series", 2017, 35000)));
+        carService.patch(id, patch);
+
+        Mockito.verify(carDAO,Mockito.times(1)).patch(ArgumentMatchers.eq(id), ArgumentMatchers.eq(patch), ArgumentMatchers.any(LocalDateTime.class));
+    }
+
+    @Test(expected = CarNotValidException.class)
+    public void patchWithInvalidYearShouldThrowCarNotValidException() throws Exception{
+        CarPatch patch = new CarPatch();
+        patch.setYear(1700);
+
+        carService.patch(10L, patch);
+    }
+
+    @Test(expected = CarNotFoundException.class)
+    public void patchOfNonExistentCarShouldThrowCarNotFoundException() throws Exception{
+        Long id = 10L;
+        CarPatch patch = new CarPatch();
+        patch.setBrand("Audi");
+
+        given(carDAO.patch(ArgumentMatchers.eq(id), ArgumentMatchers.eq(patch), ArgumentMatchers.any(LocalDateTime.class))).willReturn(0);
+        given(carDAO.existsById(id)).willReturn(false);
+        carService.patch(id, patch);
     }
 
     @Test(expected = CarNotFoundException.class)
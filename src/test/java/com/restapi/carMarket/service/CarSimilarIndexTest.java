@@ -0,0 +1,58 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.CarSnapshot;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class CarSimilarIndexTest {
+    private final CarSimilarIndex carSimilarIndex = new CarSimilarIndex();
+
+    @Before
+    public void setUp() {
+        carSimilarIndex.priceStep = 1000;
+        carSimilarIndex.ageStepDays = 30;
+    }
+
+    @Test
+    public void similarShouldRankByYearAndPriceAndFillUpFromTheBrand() {
+        CarSnapshot car = new CarSnapshot(1, "BMW", "3 Series", 2017, 25000, null);
+        carSimilarIndex.onChange(null, car);
+        carSimilarIndex.onChange(null, new CarSnapshot(2, "BMW", "3 Series", 2017, 27500, null));
+        carSimilarIndex.onChange(null, new CarSnapshot(3, "BMW", "3 Series", 2018, 25500, null));
+        carSimilarIndex.onChange(null, new CarSnapshot(4, "BMW", "3 Series", 2010, 25000, null));
+        carSimilarIndex.onChange(null, new CarSnapshot(5, "BMW", "X5", 2017, 25000, null));
+        carSimilarIndex.onChange(null, new CarSnapshot(6, "Audi", "A4", 2017, 25000, null));
+
+        Assert.assertEquals(Arrays.asList(3L, 2L), ids(carSimilarIndex.similar(car, 2, false)));
+        Assert.assertEquals(Arrays.asList(3L, 2L, 4L, 5L), ids(carSimilarIndex.similar(car, 10, false)));
+    }
+
+    @Test
+    public void recencyShouldPreferNewerListingsAndUpdatesShouldMoveCars() {
+        LocalDateTime now = LocalDateTime.now();
+        CarSnapshot car = new CarSnapshot(1, "Kia", "Ceed", 2019, 17000, now);
+        CarSnapshot old = new CarSnapshot(2, "Kia", "Ceed", 2019, 17000, now.minusDays(120));
+        CarSnapshot fresh = new CarSnapshot(3, "Kia", "Ceed", 2019, 19000, now.minusDays(1));
+        carSimilarIndex.onChange(null, car);
+        carSimilarIndex.onChange(null, old);
+        carSimilarIndex.onChange(null, fresh);
+
+        Assert.assertEquals(Arrays.asList(2L, 3L), ids(carSimilarIndex.similar(car, 2, false)));
+        Assert.assertEquals(Arrays.asList(3L, 2L), ids(carSimilarIndex.similar(car, 2, true)));
+
+        carSimilarIndex.onChange(old, new CarSnapshot(2, "Kia", "Sportage", 2019, 17000, now.minusDays(120)));
+        carSimilarIndex.onChange(fresh, null);
+
+        Assert.assertEquals(Arrays.asList(2L), ids(carSimilarIndex.similar(car, 2, false)));
+    }
+
+    private static List<Long> ids(List<CarSnapshot> cars) {
+        return cars.stream().map(CarSnapshot::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,73 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.CarSnapshot;
+import com.restapi.carMarket.model.CarStats;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class CarStatsIndexTest {
+    private static final List<Double> MEDIAN = Arrays.asList(0.5);
+
+    private final CarStatsIndex carStatsIndex = new CarStatsIndex();
+
+    @Test
+    public void statsShouldBeGroupedByBrandModelAndYear() {
+        carStatsIndex.onChange(null, new CarSnapshot(1, "BMW", "3 Series", 2017, 20000, null));
+        carStatsIndex.onChange(null, new CarSnapshot(2, "BMW", "3 Series", 2017, 30000, null));
+        carStatsIndex.onChange(null, new CarSnapshot(3, "BMW", "3 Series", 2018, 40000, null));
+
+        List<CarStats> stats = carStatsIndex.stats("BMW", null, null, MEDIAN);
+
+        Assert.assertEquals(2, stats.size());
+        Assert.assertEquals(2017, (int) stats.get(0).getYear());
+        Assert.assertEquals(2, stats.get(0).getCount());
+        Assert.assertEquals(25000, stats.get(0).getAveragePrice(), 0.0);
+        Assert.assertEquals(20000, stats.get(0).getMinPrice(), 20000 * PriceDistribution.RELATIVE_ACCURACY);
+        Assert.assertEquals(30000, stats.get(0).getMaxPrice(), 30000 * PriceDistribution.RELATIVE_ACCURACY);
+    }
+
+    @Test
+    public void percentilesShouldBeWithinRelativeAccuracy() {
+        for(int i = 1; i <= 10000; i++)
+            carStatsIndex.onChange(null, new CarSnapshot(i, "Porsche", "911", 2019, i * 10, null));
+
+        CarStats stats = carStatsIndex.summary("Porsche", "911", null, Arrays.asList(0.5, 0.9, 0.99));
+
+        Assert.assertEquals(50000, stats.getPercentiles().get("0.5"), 50000 * PriceDistribution.RELATIVE_ACCURACY);
+        Assert.assertEquals(90000, stats.getPercentiles().get("0.9"), 90000 * PriceDistribution.RELATIVE_ACCURACY);
+        Assert.assertEquals(99000, stats.getPercentiles().get("0.99"), 99000 * PriceDistribution.RELATIVE_ACCURACY);
+    }
+
+    @Test
+    public void updateAndDeleteShouldMoveAndRemovePrices() {
+        CarSnapshot car = new CarSnapshot(1, "Audi", "A4", 2016, 15000, null);
+        CarSnapshot updated = new CarSnapshot(1, "Audi", "A4", 2017, 17000, null);
+
+        carStatsIndex.onChange(null, car);
+        carStatsIndex.onChange(car, updated);
+
+        Assert.assertTrue(carStatsIndex.stats("Audi", "A4", 2016, MEDIAN).isEmpty());
+        Assert.assertEquals(1, carStatsIndex.summary("Audi", "A4", 2017, MEDIAN).getCount());
+
+        carStatsIndex.onChange(updated, null);
+
+        Assert.assertTrue(carStatsIndex.stats("Audi", null, null, MEDIAN).isEmpty());
+        Assert.assertEquals(0, carStatsIndex.summary("Audi", null, null, MEDIAN).getCount());
+    }
+
+    @Test
+    public void summaryShouldMergeEveryMatchingDistribution() {
+        carStatsIndex.onChange(null, new CarSnapshot(1, "Toyota", "Corolla", 2010, 5000, null));
+        carStatsIndex.onChange(null, new CarSnapshot(2, "Toyota", "Corolla", 2015, 9000, null));
+        carStatsIndex.onChange(null, new CarSnapshot(3, "Toyota", "Camry", 2015, 13000, null));
+
+        CarStats stats = carStatsIndex.summary("Toyota", null, null, MEDIAN);
+
+        Assert.assertEquals(3, stats.getCount());
+        Assert.assertEquals(9000, stats.getAveragePrice(), 0.0);
+        Assert.assertEquals(9000, stats.getPercentiles().get("0.5"), 9000 * PriceDistribution.RELATIVE_ACCURACY);
+    }
+}
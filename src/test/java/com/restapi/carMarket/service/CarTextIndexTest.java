@@ -0,0 +1,63 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.CarSnapshot;
+import com.restapi.carMarket.model.CarSuggestion;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class CarTextIndexTest {
+
+    private final CarTextIndex carTextIndex = new CarTextIndex();
+
+    @Before
+    public void setUp() {
+        carTextIndex.onChange(null, new CarSnapshot(1, "Porsche", "Panamera", 2017, 75000, null));
+        carTextIndex.onChange(null, new CarSnapshot(2, "Porsche", "Panamera", 2019, 95000, null));
+        carTextIndex.onChange(null, new CarSnapshot(3, "Porsche", "911", 2018, 110000, null));
+        carTextIndex.onChange(null, new CarSnapshot(4, "BMW", "3 Series", 2017, 25000, null));
+        carTextIndex.onChange(null, new CarSnapshot(5, "Toyota", "Land Cruiser", 2012, 30000, null));
+    }
+
+    @Test
+    public void misspelledQueryShouldRankTheIntendedModelFirst() {
+        List<CarSuggestion> suggestions = carTextIndex.suggest("porshe panamra", 10);
+
+        Assert.assertEquals("Porsche", suggestions.get(0).getBrand());
+        Assert.assertEquals("Panamera", suggestions.get(0).getModel());
+        Assert.assertEquals(2, suggestions.get(0).getCount());
+        Assert.assertEquals("911", suggestions.get(1).getModel());
+        Assert.assertTrue(suggestions.get(0).getScore() > suggestions.get(1).getScore());
+    }
+
+    @Test
+    public void lastWordShouldAutocompleteAsAPrefix() {
+        List<CarSuggestion> suggestions = carTextIndex.suggest("toyota land cr", 10);
+
+        Assert.assertEquals(1, suggestions.size());
+        Assert.assertEquals("Land Cruiser", suggestions.get(0).getModel());
+    }
+
+    @Test
+    public void searchShouldReturnNewestCarsOfTheBestNameFirst() {
+        Assert.assertEquals(Arrays.asList(2L, 1L, 3L), carTextIndex.search("porsche panamera", 10));
+        Assert.assertEquals(Arrays.asList(2L), carTextIndex.search("porsche panamera", 1));
+    }
+
+    @Test
+    public void renamedAndDeletedCarsShouldLeaveTheIndex() {
+        CarSnapshot bmw = new CarSnapshot(4, "BMW", "3 Series", 2017, 25000, null);
+        CarSnapshot renamed = new CarSnapshot(4, "BMW", "X5", 2017, 25000, null);
+        carTextIndex.onChange(bmw, renamed);
+
+        Assert.assertEquals("X5", carTextIndex.suggest("bmw", 10).get(0).getModel());
+        Assert.assertEquals(1, carTextIndex.suggest("bmw", 10).size());
+        Assert.assertTrue(carTextIndex.suggest("series", 10).isEmpty());
+
+        carTextIndex.onChange(renamed, null);
+        Assert.assertTrue(carTextIndex.suggest("bmw", 10).isEmpty());
+    }
+}
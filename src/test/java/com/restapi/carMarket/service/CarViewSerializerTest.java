@@ -0,0 +1,35 @@
+package com.restapi.carMarket.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.restapi.carMarket.api.CarViewSerializer;
+import com.restapi.carMarket.model.Car;
+import com.restapi.carMarket.model.CarView;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+
+public class CarViewSerializerTest {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().serializers(new CarViewSerializer()).build();
+
+    @Test
+    public void viewShouldSerializeLikeTheEntity() throws JsonProcessingException {
+        Car car = new Car("Mercedes-Benz", "E 350 \"AMG\"", 2017, 45000);
+        car.setId(42L);
+        car.setPostTime(LocalDateTime.of(2019, 1, 2, 3, 4, 5, 600));
+        car.setModifiedTime(LocalDateTime.of(2020, 12, 31, 23, 59, 59));
+        car.setVersion(3L);
+
+        Assert.assertEquals(objectMapper.writeValueAsString(car), objectMapper.writeValueAsString(CarView.of(car)));
+    }
+
+    @Test
+    public void viewShouldWriteMissingValuesAsNull() throws JsonProcessingException {
+        Car car = new Car("Lada", "Niva", 1995, 1500);
+        car.setPostTime(null);
+
+        Assert.assertEquals(objectMapper.writeValueAsString(car), objectMapper.writeValueAsString(CarView.of(car)));
+    }
+}
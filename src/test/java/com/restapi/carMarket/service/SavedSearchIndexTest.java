@@ -0,0 +1,119 @@
+package com.restapi.carMarket.service;
+
+import com.restapi.carMarket.model.CarSnapshot;
+import com.restapi.carMarket.model.SavedSearch;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class SavedSearchIndexTest {
+
+    private static final String[] BRANDS = {"Porsche", "BMW", "Kia"};
+    private static final String[] MODELS = {"Panamera", "X5", "Ceed"};
+
+    private final SavedSearchIndex savedSearchIndex = new SavedSearchIndex();
+
+    @Before
+    public void setUp() {
+        savedSearchIndex.savedSearchAlerts = Mockito.mock(SavedSearchAlerts.class);
+    }
+
+    @Test
+    public void matchShouldFindExactlyTheSearchesAScanFinds() {
+        Random random = new Random(42);
+        List<SavedSearch> searches = new ArrayList<>();
+        for(long id = 1; id <= 5000; id++) {
+            SavedSearch search = new SavedSearch(
+                    random.nextInt(4) == 0 ? null : BRANDS[random.nextInt(BRANDS.length)],
+                    random.nextInt(3) == 0 ? null : MODELS[random.nextInt(MODELS.length)],
+                    random.nextBoolean() ? null : 2005 + random.nextInt(10),
+                    random.nextBoolean() ? null : 2015 + random.nextInt(10),
+                    random.nextBoolean() ? null : random.nextInt(50_000),
+                    random.nextBoolean() ? null : 30_000 + random.nextInt(70_000));
+            search.setId(id);
+            searches.add(search);
+        }
+        savedSearchIndex.addAll(searches.subList(0, 2500));
+        searches.subList(2500, 5000).forEach(savedSearchIndex::add);
+        Assert.assertEquals(5000, savedSearchIndex.size());
+
+        for(int i = 0; i < 1000; i++) {
+            CarSnapshot car = new CarSnapshot(i, BRANDS[random.nextInt(BRANDS.length)], MODELS[random.nextInt(MODELS.length)],
+                    2000 + random.nextInt(25), random.nextInt(110_000), null);
+            List<Long> expected = new ArrayList<>();
+            for(SavedSearch search : searches)
+                if(search.matches(car))
+                    expected.add(search.getId());
+            List<Long> hits = savedSearchIndex.match(car);
+            Collections.sort(hits);
+            Assert.assertEquals(expected, hits);
+        }
+    }
+
+    @Test
+    public void searchesAddedOneByOneAndRemovedShouldMatchLikeAScan() {
+        Random random = new Random(7);
+        List<SavedSearch> searches = new ArrayList<>();
+        for(long id = 1; id <= 3000; id++) {
+            SavedSearch search = new SavedSearch(BRANDS[random.nextInt(BRANDS.length)], null, null, null,
+                    random.nextInt(50_000), 30_000 + random.nextInt(70_000));
+            search.setId(id);
+            savedSearchIndex.add(search);
+            searches.add(search);
+        }
+        List<SavedSearch> kept = new ArrayList<>();
+        for(SavedSearch search : searches)
+            if(search.getId() % 3 == 0)
+                savedSearchIndex.remove(search);
+            else
+                kept.add(search);
+        Assert.assertEquals(kept.size(), savedSearchIndex.size());
+
+        for(int i = 0; i < 200; i++) {
+            CarSnapshot car = new CarSnapshot(i, BRANDS[random.nextInt(BRANDS.length)], MODELS[random.nextInt(MODELS.length)],
+                    2010, random.nextInt(110_000), null);
+            List<Long> expected = new ArrayList<>();
+            for(SavedSearch search : kept)
+                if(search.matches(car))
+                    expected.add(search.getId());
+            List<Long> hits = savedSearchIndex.match(car);
+            Collections.sort(hits);
+            Assert.assertEquals(expected, hits);
+        }
+    }
+
+    @Test
+    public void onlyLiveWritesThatStartToMatchShouldRaiseAlerts() {
+        SavedSearch cheapPanamera = new SavedSearch("Porsche", "Panamera", 2016, null, null, 79999);
+        cheapPanamera.setId(1L);
+        SavedSearch anyPorsche = new SavedSearch("Porsche", null, null, null, null, null);
+        anyPorsche.setId(2L);
+        savedSearchIndex.addAll(List.of(cheapPanamera, anyPorsche));
+
+        CarSnapshot listed = new CarSnapshot(7, "Porsche", "Panamera", 2017, 85000, null);
+        savedSearchIndex.onChange(null, listed);
+        verify(savedSearchIndex.savedSearchAlerts, never()).publish(any(), anyList());
+
+        savedSearchIndex.onLoaded();
+        savedSearchIndex.onChange(null, listed);
+        verify(savedSearchIndex.savedSearchAlerts).publish(listed, List.of(2L));
+
+        CarSnapshot reduced = new CarSnapshot(7, "Porsche", "Panamera", 2017, 78000, null);
+        savedSearchIndex.onChange(listed, reduced);
+        verify(savedSearchIndex.savedSearchAlerts).publish(reduced, List.of(1L));
+
+        savedSearchIndex.remove(cheapPanamera);
+        Assert.assertEquals(List.of(2L), savedSearchIndex.match(reduced));
+    }
+}
@@ -0,0 +1,113 @@
+package com.restapi.carMarket.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.restapi.carMarket.CarMarketApplication;
+import com.restapi.carMarket.model.Car;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.Is.is;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CarMarketApplication.class)
+@AutoConfigureMockMvc
+public class SavedSearchIntegrationTest {
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    CarService carService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Test
+    public void longPollShouldDeliverNewListingsThatMatchTheSavedSearch() throws Exception {
+        String body = mockMvc.perform(post("/cars/saved-searches").contentType(APPLICATION_JSON)
+                .content("{\"brand\":\"Porsche\",\"model\":\"Cayenne\",\"minYear\":2016,\"maxPrice\":79999}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long id = objectMapper.readTree(body).get("id").asLong();
+
+        MvcResult poll = mockMvc.perform(get("/cars/saved-searches/" + id + "/alerts?wait=10000"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        carService.insert(new Car("Porsche", "Cayenne", 2015, 45000));
+        carService.insert(new Car("Porsche", "Cayenne", 2018, 82000));
+        carService.insert(new Car("Porsche", "Cayenne", 2018, 69000));
+
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].searchId", is((int) id)))
+                .andExpect(jsonPath("$[0].car.price", is(69000)));
+
+        mockMvc.perform(delete("/cars/saved-searches/" + id)).andExpect(status().isNoContent());
+        mockMvc.perform(get("/cars/saved-searches/" + id + "/alerts")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void streamsShouldEachReceiveTheAlertsOfTheirSearch() throws Exception {
+        long bmw = save("{\"brand\":\"BMW\",\"model\":\"Z4\",\"maxPrice\":50000}");
+        long audi = save("{\"brand\":\"Audi\",\"model\":\"TT\",\"maxPrice\":50000}");
+
+        MvcResult bmwStream = mockMvc.perform(get("/cars/saved-searches/" + bmw + "/alerts").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult audiStream = mockMvc.perform(get("/cars/saved-searches/" + audi + "/alerts").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        carService.insert(new Car("BMW", "Z4", 2019, 41000));
+        carService.insert(new Car("Audi", "TT", 2019, 39000));
+        carService.insert(new Car("BMW", "Z4", 2020, 47000));
+
+        String bmwEvents = await(bmwStream, "47000");
+        String audiEvents = await(audiStream, "39000");
+        Assert.assertTrue(bmwEvents, bmwEvents.indexOf("41000") >= 0 && bmwEvents.indexOf("41000") < bmwEvents.indexOf("47000"));
+        Assert.assertFalse(bmwEvents, bmwEvents.contains("39000"));
+        Assert.assertFalse(audiEvents, audiEvents.contains("41000") || audiEvents.contains("47000"));
+
+        mockMvc.perform(delete("/cars/saved-searches/" + bmw)).andExpect(status().isNoContent());
+        mockMvc.perform(delete("/cars/saved-searches/" + audi)).andExpect(status().isNoContent());
+    }
+
+    @Test
+    public void invertedRangeShouldBeRejected() throws Exception {
+        mockMvc.perform(post("/cars/saved-searches").contentType(APPLICATION_JSON)
+                .content("{\"brand\":\"Porsche\",\"minPrice\":90000,\"maxPrice\":80000}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private long save(String search) throws Exception {
+        String body = mockMvc.perform(post("/cars/saved-searches").contentType(APPLICATION_JSON).content(search))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+
+    private static String await(MvcResult stream, String expected) throws Exception {
+        long deadline = System.currentTimeMillis() + 10000;
+        String events;
+        while(!(events = stream.getResponse().getContentAsString()).contains(expected) && System.currentTimeMillis() < deadline)
+            Thread.sleep(20);
+        Assert.assertTrue(events, events.contains(expected));
+        return events;
+    }
+}